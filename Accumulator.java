@@ -0,0 +1,55 @@
+public final class Accumulator {
+	/*
+	 * Streaming mean and variance (Welford's update). Two accumulators
+	 * fed from disjoint samples can be merged (Chan et al.), which gives
+	 * the same result as feeding every sample to a single one.
+	 */
+	
+	private long n = 0;
+	private double mean = 0., m2 = 0.; // m2: sum of squared deviations from the mean.
+	
+	public void add(double x){
+		this.n += 1;
+		double delta = x - this.mean;
+		this.mean += delta / this.n;
+		this.m2 += delta * (x - this.mean);
+	}
+	
+	public void merge(Accumulator other){
+		if(other.n == 0) return;
+		if(this.n == 0){
+			this.n = other.n;
+			this.mean = other.mean;
+			this.m2 = other.m2;
+			return;
+		}
+		long n = this.n + other.n;
+		double delta = other.mean - this.mean;
+		this.mean += delta * other.n / n;
+		this.m2 += other.m2 + delta * delta * ((double)this.n * other.n / n);
+		this.n = n;
+	}
+	
+	public long getCount(){
+		return this.n;
+	}
+	
+	public double getMean(){
+		return this.mean;
+	}
+	
+	public double getVariance(){
+		/*
+		 * Population variance <x^2> - <x>^2, never negative.
+		 */
+		return this.n > 0 ? this.m2 / this.n : 0.;
+	}
+	
+	public double getStdError(){
+		/*
+		 * Standard error of the mean for independent samples.
+		 */
+		return this.n > 1 ? Math.sqrt(this.m2 / (this.n - 1) / this.n) : 0.;
+	}
+	
+}
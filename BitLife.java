@@ -0,0 +1,140 @@
+public class BitLife implements LifeEngine {
+	/*
+	 * Bit-parallel Game of Life. Each line i of the grid is packed 64
+	 * cells per long (cell j is bit j%64 of word j/64), and a whole word
+	 * of cells is advanced at once: the eight neighbour words are summed
+	 * with bitwise full adders (SWAR) and the B3/S23 rule is applied to
+	 * the 3 bit count. The torus wrap inside a line is handled when the
+	 * west/east neighbour words are built at the line ends.
+	 */
+	
+	protected final int N, W; // W: words per line.
+	protected final long lastMask; // Valid bits of the last word of a line.
+	protected long[] cells, next;
+	protected long generation = 0;
+	
+	public BitLife(int N){
+		if(N <= 0) throw new IllegalArgumentException("N has to be larger than 0.");
+		this.N = N;
+		this.W = (N + 63) >>> 6;
+		this.lastMask = (N & 63) == 0 ? -1L : (1L << (N & 63)) - 1;
+		this.cells = new long[N*W];
+		this.next = new long[N*W];
+	}
+	
+	public int getN(){
+		return this.N;
+	}
+	
+	public boolean get(int i, int j){
+		return (this.cells[i*W + (j >>> 6)] >>> j & 1) != 0;
+	}
+	
+	public void set(int i, int j, boolean alive){
+		if(alive) this.cells[i*W + (j >>> 6)] |= 1L << j;
+		else this.cells[i*W + (j >>> 6)] &= ~(1L << j);
+	}
+	
+	public long getGeneration(){
+		return this.generation;
+	}
+	
+	public void randomise(Rng rng){
+		for(int i=0; i<N; i++){
+			for(int w=0; w<W; w++) this.cells[i*W + w] = rng.nextLong();
+			this.cells[i*W + W-1] &= this.lastMask;
+		}
+	}
+	
+	public void store(byte[] codes){
+		for(int i=0; i<N; i++)
+			for(int j=0; j<N; j++)
+				codes[i*N + j] = (byte)(this.cells[i*W + (j >>> 6)] >>> j & 1);
+	}
+	
+	public long population(){
+		long n = 0;
+		for(long word : this.cells) n += Long.bitCount(word);
+		return n;
+	}
+	
+	public void step(long generations){
+		for(long g=0; g<generations; g++){
+			stepLines(this.cells, this.next, N, W, lastMask, 0, N);
+			long[] aux = this.cells;
+			this.cells = this.next;
+			this.next = aux;
+			this.generation += 1;
+		}
+	}
+	
+	public double generationsPerSecond(long generations){
+		/*
+		 * Advances 'generations' and returns the rate achieved.
+		 */
+		long t0 = System.nanoTime();
+		this.step(generations);
+		return generations / ((System.nanoTime() - t0) * 1e-9);
+	}
+	
+	static void stepLines(long[] src, long[] dst, int N, int W, long lastMask, int from, int to){
+		/*
+		 * Writes the next generation of lines [from, to) of 'src' into 'dst'.
+		 */
+		for(int i=from; i<to; i++)
+			stepLine(src, dst, N, W, lastMask, i);
+	}
+	
+	static boolean stepLine(long[] src, long[] dst, int N, int W, long lastMask, int i){
+		/*
+		 * Next generation of line i. Returns true if it changed.
+		 */
+		long changed = 0;
+		for(int w=0; w<W; w++)
+			changed |= stepWord(src, dst, N, W, lastMask, i, w);
+		return changed != 0;
+	}
+	
+	static long stepWord(long[] src, long[] dst, int N, int W, long lastMask, int i, int w){
+		/*
+		 * Next generation of word w of line i. Returns the bits that changed.
+		 */
+		int up = (i == 0 ? N-1 : i-1)*W, mid = i*W, down = (i == N-1 ? 0 : i+1)*W;
+		int lastBit = ((N - 1) & 63); // Position of the last valid bit of a line.
+		long u = src[up + w], m = src[mid + w], d = src[down + w];
+		long uw, ue, mw, me, dw, de; // West (cell j-1) and east (cell j+1) neighbours.
+		if(w == 0){
+			uw = (u << 1) | (src[up + W-1] >>> lastBit & 1);
+			mw = (m << 1) | (src[mid + W-1] >>> lastBit & 1);
+			dw = (d << 1) | (src[down + W-1] >>> lastBit & 1);
+		}
+		else{
+			uw = (u << 1) | (src[up + w-1] >>> 63);
+			mw = (m << 1) | (src[mid + w-1] >>> 63);
+			dw = (d << 1) | (src[down + w-1] >>> 63);
+		}
+		if(w == W-1){
+			ue = (u >>> 1) | ((src[up] & 1) << lastBit);
+			me = (m >>> 1) | ((src[mid] & 1) << lastBit);
+			de = (d >>> 1) | ((src[down] & 1) << lastBit);
+		}
+		else{
+			ue = (u >>> 1) | (src[up + w+1] << 63);
+			me = (m >>> 1) | (src[mid + w+1] << 63);
+			de = (d >>> 1) | (src[down + w+1] << 63);
+		}
+		// Sum of the eight neighbours, bit-sliced: count = s0 + 2*s1 + 4*s2 (8 wraps to 0).
+		long a1 = uw ^ u, sA = a1 ^ ue, cA = (uw & u) | (ue & a1);
+		long b1 = mw ^ me, sB = b1 ^ dw, cB = (mw & me) | (dw & b1);
+		long sC = d ^ de, cC = d & de;
+		long t1 = sA ^ sB, s0 = t1 ^ sC, cD = (sA & sB) | (sC & t1);
+		long t2 = cA ^ cB, t = t2 ^ cC, cE = (cA & cB) | (cC & t2);
+		long s1 = t ^ cD, cF = t & cD;
+		long s2 = cE ^ cF;
+		long result = s1 & ~s2 & (s0 | m); // Born with 3, survives with 2 or 3.
+		if(w == W-1) result &= lastMask;
+		dst[mid + w] = result;
+		return result ^ m;
+	}
+	
+}
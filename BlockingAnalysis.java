@@ -0,0 +1,120 @@
+public final class BlockingAnalysis {
+	/*
+	 * Mean and standard error of a correlated time series by blocking
+	 * (Flyvbjerg & Petersen 1989), streaming. Level k keeps Welford
+	 * sums of the means of consecutive blocks of 2^k samples, so memory
+	 * does not grow with the series.
+	 * The naive error of level k grows with k while the blocks are
+	 * shorter than the correlation time and levels off once they are
+	 * independent. The error estimate is the largest level error with
+	 * at least MIN_BLOCKS blocks; isConverged() tells whether the top
+	 * usable levels have reached that plateau.
+	 */
+
+	public static final int MIN_BLOCKS = 32;
+	private static final int LEVELS = 64;
+
+	private final long[] n = new long[LEVELS]; // Blocks completed at each level.
+	private final double[] mean = new double[LEVELS], m2 = new double[LEVELS];
+	private final double[] pending = new double[LEVELS]; // First half of the next block.
+	private final boolean[] full = new boolean[LEVELS]; // pending[k] holds a value.
+
+	public void add(double x){
+		for(int k=0; k<LEVELS; k++){
+			this.n[k] += 1;
+			double delta = x - this.mean[k];
+			this.mean[k] += delta / this.n[k];
+			this.m2[k] += delta * (x - this.mean[k]);
+			if(!this.full[k]){
+				this.pending[k] = x;
+				this.full[k] = true;
+				return;
+			}
+			x = 0.5*(this.pending[k] + x); // Block of 2^(k+1) samples done.
+			this.full[k] = false;
+		}
+	}
+
+	public long getCount(){
+		return this.n[0];
+	}
+
+	public double getMean(){
+		return this.mean[0];
+	}
+
+	public double getVariance(){
+		/*
+		 * Population variance of the samples, never negative.
+		 */
+		return this.n[0] > 0 ? this.m2[0] / this.n[0] : 0.;
+	}
+
+	private double levelError(int k){
+		return Math.sqrt(this.m2[k] / (this.n[k] - 1) / this.n[k]);
+	}
+
+	public double getStdError(){
+		/*
+		 * Standard error of the mean allowing for autocorrelation.
+		 */
+		if(this.n[0] < 2) return Double.POSITIVE_INFINITY;
+		double error = this.levelError(0);
+		for(int k=1; k<LEVELS && this.n[k] >= MIN_BLOCKS; k++)
+			error = Math.max(error, this.levelError(k));
+		return error;
+	}
+
+	public double getAutocorrelationTime(){
+		/*
+		 * Integrated autocorrelation time in samples,
+		 * tau = (error / naive error)^2 / 2; 0.5 for independent samples.
+		 */
+		double naive = this.n[0] > 1 ? this.levelError(0) : 0.;
+		if(naive == 0.) return 0.5;
+		double ratio = this.getStdError() / naive;
+		return 0.5 * ratio * ratio;
+	}
+
+	public boolean isConverged(){
+		/*
+		 * The error of the top usable level is no longer significantly
+		 * above the one below it, so the blocks are longer than the
+		 * correlation time.
+		 */
+		int top = 0;
+		while(top+1 < LEVELS && this.n[top+1] >= MIN_BLOCKS) top++;
+		if(top < 2) return false;
+		double lower = this.levelError(top-1), upper = this.levelError(top);
+		if(lower == 0.) return upper == 0.;
+		// Relative statistical error of a level error from n blocks: 1/sqrt(2(n-1)).
+		return upper <= lower * (1. + 2./Math.sqrt(2.*(this.n[top] - 1)));
+	}
+
+	double[] getState(){
+		/*
+		 * Everything needed to continue the analysis, for checkpoints.
+		 */
+		double[] state = new double[5*LEVELS];
+		for(int k=0; k<LEVELS; k++){
+			state[5*k] = this.n[k];
+			state[5*k+1] = this.mean[k];
+			state[5*k+2] = this.m2[k];
+			state[5*k+3] = this.pending[k];
+			state[5*k+4] = this.full[k] ? 1. : 0.;
+		}
+		return state;
+	}
+
+	void setState(double[] state){
+		if(state.length != 5*LEVELS) throw new IllegalArgumentException("Blocking state has 5*64 values.");
+		for(int k=0; k<LEVELS; k++){
+			this.n[k] = (long)state[5*k];
+			this.mean[k] = state[5*k+1];
+			this.m2[k] = state[5*k+2];
+			this.pending[k] = state[5*k+3];
+			this.full[k] = state[5*k+4] != 0.;
+		}
+	}
+
+}
@@ -0,0 +1,61 @@
+public final class ByteLattice implements Lattice {
+	
+	private final int Nx, Ny;
+	private final byte[] sites; // One byte per site, rows of Ny sites back to back.
+	
+	public ByteLattice(int Nx, int Ny){
+		if(Nx > 0 && Ny > 0 && (long)Nx*Ny <= Integer.MAX_VALUE - 8){
+			this.Nx = Nx;
+			this.Ny = Ny;
+			this.sites = new byte[Nx*Ny];
+		} else throw new IllegalArgumentException("Nx, Ny > 0 and Nx*Ny < 2^31.");
+	}
+	
+	public int getNx(){
+		return this.Nx;
+	}
+	
+	public int getNy(){
+		return this.Ny;
+	}
+	
+	public long size(){
+		return this.sites.length;
+	}
+	
+	public byte get(long idx){
+		return this.sites[(int)idx];
+	}
+	
+	public void set(long idx, byte siteState){
+		this.sites[(int)idx] = siteState;
+	}
+	
+	public void get(long from, byte[] dst, int offset, int length){
+		System.arraycopy(this.sites, (int)from, dst, offset, length);
+	}
+	
+	public void set(long from, byte[] src, int offset, int length){
+		System.arraycopy(src, offset, this.sites, (int)from, length);
+	}
+	
+	public void copyTo(Lattice other){
+		/*
+		 * Copies every site into 'other', which must have the same shape.
+		 */
+		if(other.getNx() != this.Nx || other.getNy() != this.Ny)
+			throw new IllegalArgumentException("Lattices must have the same shape.");
+		if(other instanceof ByteLattice)
+			System.arraycopy(this.sites, 0, ((ByteLattice)other).sites, 0, this.sites.length);
+		else
+			other.set(0, this.sites, 0, this.sites.length);
+	}
+	
+	byte[] array(){
+		/*
+		 * Direct access to the backing array for bulk kernels.
+		 */
+		return this.sites;
+	}
+	
+}
@@ -0,0 +1,191 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class Checkpoint {
+	/*
+	 * Progress of a long Sirs sweep (getp1_p3Data(), getImmunity()),
+	 * so a run that dies can be restarted where it stopped. Written to
+	 * 'path.tmp', forced to disk and moved over 'path', so the file on
+	 * disk is always a complete checkpoint. The lattice is streamed in
+	 * blocks, so it may hold more than 2^31 sites.
+	 *
+	 * Little-endian layout:
+	 *   int    magic "SIRC", int version
+	 *   int    length of the run description, then its UTF-8 bytes
+	 *   int    Nx, int Ny
+	 *   int    completed points, int columns per row, then the rows (doubles)
+	 *   int    1 if the generator state follows, then 4 longs (xoshiro256**)
+	 *   int    1 if a point is in progress, then
+	 *            int phase, long equilibration updates used, int samples taken,
+	 *            3 x 320 doubles: blocking analysis state of S, I, R,
+	 *            int detector samples in the ring (0: no detector), long detector count,
+	 *            then the ring as doubles
+	 *   int    1 if the lattice follows, then Nx*Ny lattice bytes (may exceed 2^31):
+	 *            the point in progress, or between points in continuation
+	 *            mode the last point's, for the next one to start warm from
+	 */
+
+	public static final int MAGIC = 0x43524953; // "SIRC" in little-endian byte order.
+	public static final int VERSION = 3;
+	private static final int BLOCK_BYTES = 1 << 20; // Lattice bytes per write/read.
+
+	final String run; // Description of the sweep, a checkpoint only resumes the same one.
+	final int Nx, Ny;
+	final List<double[]> rows = new ArrayList<>(); // Output rows of the completed points.
+	long[] rng; // Generator state, null if the generator cannot be saved.
+	Point point; // Point in progress, null between points.
+	Lattice lattice; // Lattice of the point in progress, or to continue warm from, see above.
+
+	static final class Point {
+		/*
+		 * Where Sirs.measure() is within one grid point.
+		 */
+		int phase = 0; // 0 equilibrating, 1 averaging.
+		long used = 0; // Equilibration updates so far.
+		int samples = 0; // Samples averaged so far.
+		final BlockingAnalysis[] stats = {new BlockingAnalysis(), new BlockingAnalysis(), 
+				new BlockingAnalysis()}; // Samples of S/N, I/N, R/N.
+		final EquilibrationDetector detector;
+
+		Point(EquilibrationDetector detector){
+			this.detector = detector;
+		}
+	}
+
+	Checkpoint(String run, int Nx, int Ny){
+		this.run = run;
+		this.Nx = Nx;
+		this.Ny = Ny;
+	}
+
+	void write(String path) throws IOException{
+		byte[] name = this.run.getBytes(StandardCharsets.UTF_8);
+		int columns = this.rows.isEmpty() ? 0 : this.rows.get(0).length;
+		boolean inPoint = this.point != null && this.lattice != null && this.rng != null;
+		boolean withLattice = inPoint || (this.point == null && this.lattice != null);
+		double[][] ring = inPoint && this.point.detector != null ? this.point.detector.getRing() : new double[0][];
+		long bytes = 4*7L + name.length + 8L*columns*this.rows.size() + 4 + 32 + 4 + 4;
+		if(inPoint) bytes += 4 + 8 + 4 + 3*8*320 + 4 + 8 + 24L*ring.length;
+		ByteBuffer buffer = ByteBuffer.allocate((int)bytes).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(name.length).put(name);
+		buffer.putInt(this.Nx).putInt(this.Ny).putInt(this.rows.size()).putInt(columns);
+		for(double[] row : this.rows)
+			for(double x : row) buffer.putDouble(x);
+		buffer.putInt(this.rng != null ? 1 : 0);
+		if(this.rng != null)
+			for(long s : this.rng) buffer.putLong(s);
+		buffer.putInt(inPoint ? 1 : 0);
+		if(inPoint){
+			buffer.putInt(this.point.phase).putLong(this.point.used).putInt(this.point.samples);
+			for(BlockingAnalysis stat : this.point.stats)
+				for(double x : stat.getState()) buffer.putDouble(x);
+			buffer.putInt(ring.length);
+			buffer.putLong(this.point.detector != null ? this.point.detector.getSamples() : 0);
+			for(double[] sample : ring)
+				buffer.putDouble(sample[0]).putDouble(sample[1]).putDouble(sample[2]);
+		}
+		buffer.putInt(withLattice ? 1 : 0);
+		buffer.flip();
+
+		Path target = Paths.get(path), tmp = Paths.get(path + ".tmp");
+		try(FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+			while(buffer.hasRemaining()) channel.write(buffer);
+			if(withLattice){
+				byte[] block = new byte[(int)Math.min(BLOCK_BYTES, this.lattice.size())];
+				for(long from=0; from<this.lattice.size(); from+=block.length){
+					int n = (int)Math.min(block.length, this.lattice.size() - from);
+					this.lattice.get(from, block, 0, n);
+					ByteBuffer out = ByteBuffer.wrap(block, 0, n);
+					while(out.hasRemaining()) channel.write(out);
+				}
+			}
+			channel.force(true);
+		}
+		Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	static Checkpoint read(String path, double tolerance, int window) throws IOException{
+		/*
+		 * Returns null if there is no checkpoint at 'path'. The detector
+		 * of a point in progress is rebuilt with 'tolerance' and the 
+		 * saved window ('window' if none was saved).
+		 */
+		Path source = Paths.get(path);
+		if(!Files.exists(source)) return null;
+		try(FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)){
+			return read(path, channel, tolerance, window);
+		}
+	}
+
+	private static Checkpoint read(String path, FileChannel channel, double tolerance, int window) throws IOException{
+		// Everything but the lattice is small: map the start of the file and parse it there.
+		ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, 
+				Math.min(channel.size(), Integer.MAX_VALUE)).order(ByteOrder.LITTLE_ENDIAN);
+		if(buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+			throw new IOException(path + " is not a version " + VERSION + " Sirs checkpoint.");
+		byte[] name = new byte[buffer.getInt()];
+		buffer.get(name);
+		Checkpoint ck = new Checkpoint(new String(name, StandardCharsets.UTF_8), buffer.getInt(), buffer.getInt());
+		int nRows = buffer.getInt(), columns = buffer.getInt();
+		for(int r=0; r<nRows; r++){
+			double[] row = new double[columns];
+			for(int c=0; c<columns; c++) row[c] = buffer.getDouble();
+			ck.rows.add(row);
+		}
+		if(buffer.getInt() == 1)
+			ck.rng = new long[] {buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong()};
+		if(buffer.getInt() == 1){
+			int phase = buffer.getInt();
+			long used = buffer.getLong();
+			int samples = buffer.getInt();
+			double[][] stats = new double[3][320];
+			for(double[] stat : stats)
+				for(int c=0; c<320; c++) stat[c] = buffer.getDouble();
+			int ringLength = buffer.getInt();
+			long count = buffer.getLong();
+			EquilibrationDetector detector = null;
+			if(ringLength > 0){
+				double[][] ring = new double[ringLength][3];
+				for(double[] sample : ring)
+					for(int c=0; c<3; c++) sample[c] = buffer.getDouble();
+				if(tolerance > 0){
+					detector = new EquilibrationDetector(tolerance, ringLength / 2);
+					detector.restore(ring, count);
+				}
+			}
+			else if(tolerance > 0) detector = new EquilibrationDetector(tolerance, window);
+			ck.point = new Point(detector);
+			ck.point.phase = phase;
+			ck.point.used = used;
+			ck.point.samples = samples;
+			for(int c=0; c<3; c++) ck.point.stats[c].setState(stats[c]);
+		}
+		if(buffer.getInt() == 1){
+			ck.lattice = (long)ck.Nx*ck.Ny <= Integer.MAX_VALUE - 8 ? new ByteLattice(ck.Nx, ck.Ny) : 
+					new OffHeapLattice(ck.Nx, ck.Ny);
+			byte[] block = new byte[(int)Math.min(BLOCK_BYTES, ck.lattice.size())];
+			long position = buffer.position();
+			for(long from=0; from<ck.lattice.size(); from+=block.length){
+				int n = (int)Math.min(block.length, ck.lattice.size() - from);
+				ByteBuffer in = ByteBuffer.wrap(block, 0, n);
+				while(in.hasRemaining())
+					if(channel.read(in, position + from + in.position()) < 0) 
+						throw new IOException("Truncated checkpoint: " + path);
+				ck.lattice.set(from, block, 0, n);
+			}
+		}
+		return ck;
+	}
+
+}
@@ -0,0 +1,178 @@
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+public class DomainUpdater {
+	/*
+	 * Random-sequential SIRS dynamics on several threads.
+	 * 
+	 * The lattice is cut into blocks, and the blocks are coloured like
+	 * a 2x2 checkerboard. Two blocks of the same colour are always
+	 * separated by at least one block of another colour (the number of
+	 * blocks along each axis is 1 or even, so this also holds across the
+	 * periodic boundary). A site and all of its Nearest Neighbours are 
+	 * therefore never written by two threads at once while a single
+	 * colour is active.
+	 * 
+	 * One sweep (Nx*Ny single-site updates) is done in ROUNDS rounds.
+	 * In each round the four colours are activated in a random order,
+	 * and every active block does its share of random single-site updates
+	 * inside the block with its own random stream, drawn in blocks of
+	 * Rng.BLOCK numbers. S/I/R deltas are kept per block and reduced 
+	 * after the sweep.
+	 * 
+	 * This approximates random-sequential updating; it is not the same
+	 * process. Each block gets exactly its area's share of the updates
+	 * per round rather than a random (multinomial) share, and the
+	 * colours take turns, so the updates of a block come in bursts.
+	 * Steady-state averages agree only statistically with SERIAL;
+	 * check against it where short-time correlations matter.
+	 * Boundary Conditions: PERIODIC
+	 */
+	
+	private static final int BLOCK = 64; // Target block side.
+	private static final int ROUNDS = 4; // Colour cycles per sweep, to interleave the blocks' updates.
+	private static final int MIN_PARALLEL_SITES = 1 << 15; // Smaller lattices run in the caller thread.
+	private final int Nx, Ny;
+	private final int[] yPlus1, yMinus1;
+	private final Block[][] colours = new Block[4][];
+	private final int[] order = {0, 1, 2, 3};
+	private final Rng rng; // Draws the colour order.
+	private Lattice state;
+	private double[] p;
+	
+	public DomainUpdater(int Nx, int Ny, Rng rng){
+		this.Nx = Nx;
+		this.Ny = Ny;
+		this.rng = rng.split();
+		this.yPlus1 = new int[Ny];
+		this.yMinus1 = new int[Ny];
+		for(int j=0; j<Ny; j++){
+			this.yPlus1[j] = (j+1) % Ny;
+			this.yMinus1[j] = (j-1+Ny) % Ny;
+		}
+		int nbx = blocks(Nx), nby = blocks(Ny);
+		int[] count = new int[4];
+		for(int bi=0; bi<nbx; bi++)
+			for(int bj=0; bj<nby; bj++)
+				count[colour(bi, bj)] += 1;
+		for(int c=0; c<4; c++){
+			this.colours[c] = new Block[count[c]];
+			count[c] = 0;
+		}
+		for(int bi=0; bi<nbx; bi++)
+			for(int bj=0; bj<nby; bj++){
+				int c = colour(bi, bj);
+				this.colours[c][count[c]++] = new Block((int)((long)bi*Nx/nbx), (int)((long)(bi+1)*Nx/nbx),
+						(int)((long)bj*Ny/nby), (int)((long)(bj+1)*Ny/nby), rng.split());
+			}
+	}
+	
+	private static int blocks(int L){
+		/*
+		 * Number of blocks along an axis of length L: 1 or even.
+		 */
+		if(L < 2) return 1;
+		return Math.max(2, 2*(L/(2*BLOCK)));
+	}
+	
+	private static int colour(int bi, int bj){
+		return 2*(bi & 1) + (bj & 1);
+	}
+	
+	public long[] sweep(Lattice state, double[] p){
+		/*
+		 * Performs Nx*Ny random single-site updates on 'state'.
+		 * Returns the population changes {dS, dI, dR}.
+		 */
+		this.state = state;
+		this.p = p;
+		boolean parallel = (long)Nx*Ny >= MIN_PARALLEL_SITES;
+		for(Block[] blocks : this.colours)
+			for(Block block : blocks) block.dS = block.dI = block.dR = 0;
+		for(int round=0; round<ROUNDS; round++){
+			for(int k=3; k>0; k--){ // Fisher-Yates shuffle of the colour order.
+				int l = this.rng.nextInt(k+1), aux = this.order[k];
+				this.order[k] = this.order[l];
+				this.order[l] = aux;
+			}
+			for(int c : this.order){
+				Block[] blocks = this.colours[c];
+				for(Block block : blocks) block.round = round;
+				if(!parallel || blocks.length == 1)
+					for(Block block : blocks) block.compute();
+				else{
+					for(Block block : blocks) block.reinitialize();
+					ForkJoinTask.invokeAll(blocks);
+				}
+			}
+		}
+		long[] delta = {0, 0, 0};
+		for(Block[] blocks : this.colours)
+			for(Block block : blocks){
+				delta[0] += block.dS;
+				delta[1] += block.dI;
+				delta[2] += block.dR;
+			}
+		this.state = null;
+		return delta;
+	}
+	
+	private class Block extends RecursiveAction {
+		/*
+		 * Rows [x0, x1) and columns [y0, y1) of the lattice.
+		 */
+		private static final long serialVersionUID = 1L;
+		private final int x0, y0, w, h;
+		private final Rng rng;
+		private final long[] draws = new long[Rng.BLOCK]; // Site and acceptance draws, two per update.
+		private int round, dS, dI, dR;
+		
+		Block(int x0, int x1, int y0, int y1, Rng rng){
+			this.x0 = x0;
+			this.y0 = y0;
+			this.w = x1 - x0;
+			this.h = y1 - y0;
+			this.rng = rng;
+		}
+		
+		protected void compute(){
+			/*
+			 * This block's share of the sweep for the current round: 
+			 * w*h updates in total, spread over the ROUNDS rounds.
+			 */
+			Lattice state = DomainUpdater.this.state;
+			long t1 = Rng.threshold(p[0]), t2 = Rng.threshold(p[1]), t3 = Rng.threshold(p[2]);
+			int sites = this.w*this.h, n = sites/ROUNDS + (this.round < sites%ROUNDS ? 1 : 0);
+			long[] draws = this.draws;
+			for(int k=0, d=draws.length; k<n; k++){
+				if(d == draws.length){ // Only the draws still needed this round.
+					this.rng.nextLongs(draws, (int)Math.min(draws.length, 2L*(n - k)));
+					d = 0;
+				}
+				long bits = draws[d++], rand = draws[d++] >>> 11;
+				int i = this.x0 + (int)(((bits >>> 32) * this.w) >>> 32);
+				int j = this.y0 + (int)(((bits & 0xffffffffL) * this.h) >>> 32);
+				long row = (long)i*Ny, idx = row + j;
+				byte siteState = state.get(idx);
+				if(siteState == 1 && rand < t2){
+					state.set(idx, (byte)2);
+					this.dI -= 1;
+					this.dR += 1;
+				}
+				else if(siteState == 2 && rand < t3){
+					state.set(idx, (byte)0);
+					this.dR -= 1;
+					this.dS += 1;
+				}
+				else if(siteState == 0 && rand < t1 && (state.get((long)((i+1) % Nx)*Ny + j) == 1 || 
+						state.get((long)((i-1+Nx) % Nx)*Ny + j) == 1 || state.get(row + yPlus1[j]) == 1 || 
+						state.get(row + yMinus1[j]) == 1)){
+					state.set(idx, (byte)1);
+					this.dS -= 1;
+					this.dI += 1;
+				}
+			}
+		}
+	}
+	
+}
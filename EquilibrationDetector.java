@@ -0,0 +1,72 @@
+public class EquilibrationDetector {
+	/*
+	 * Streaming test for the end of the transient of the S/I/R time
+	 * series. The last 2*window samples are kept; the series is taken
+	 * as settled when, for each population, the means of the older and
+	 * the newer half differ by less than
+	 *     tolerance + 2*sqrt((var_old + var_new)/window),
+	 * i.e. the drift is below the tolerance or indistinguishable from 
+	 * the fluctuations within the windows.
+	 */
+	
+	private final double tolerance;
+	private final int window;
+	private final double[][] samples; // Ring buffer, samples[k] = {S, I, R}.
+	private long n = 0;
+	
+	public EquilibrationDetector(double tolerance, int window){
+		if(tolerance > 0 && window > 1){
+			this.tolerance = tolerance;
+			this.window = window;
+			this.samples = new double[2*window][3];
+		} else throw new IllegalArgumentException("tolerance > 0, window > 1.");
+	}
+	
+	public boolean add(double S, double I, double R){
+		/*
+		 * Adds one sample of the normalised populations.
+		 * Returns true once the series has settled.
+		 */
+		double[] sample = this.samples[(int)(this.n % (2*this.window))];
+		sample[0] = S;
+		sample[1] = I;
+		sample[2] = R;
+		this.n += 1;
+		if(this.n < 2*this.window) return false;
+		for(int c=0; c<3; c++){
+			double sumOld = 0., sumNew = 0., sum2Old = 0., sum2New = 0.;
+			for(int k=0; k<this.window; k++){
+				double xOld = this.samples[(int)((this.n + k) % (2*this.window))][c];
+				double xNew = this.samples[(int)((this.n + this.window + k) % (2*this.window))][c];
+				sumOld += xOld;
+				sum2Old += xOld*xOld;
+				sumNew += xNew;
+				sum2New += xNew*xNew;
+			}
+			double meanOld = sumOld / this.window, meanNew = sumNew / this.window;
+			double var = Math.max(0., sum2Old / this.window - meanOld*meanOld) + 
+					Math.max(0., sum2New / this.window - meanNew*meanNew);
+			if(Math.abs(meanNew - meanOld) > this.tolerance + 2.*Math.sqrt(var / this.window))
+				return false;
+		}
+		return true;
+	}
+	
+	public long getSamples(){
+		return this.n;
+	}
+	
+	double[][] getRing(){
+		/*
+		 * The sample ring buffer, for checkpoints.
+		 */
+		return this.samples;
+	}
+	
+	void restore(double[][] ring, long n){
+		for(int k=0; k<this.samples.length; k++)
+			System.arraycopy(ring[k], 0, this.samples[k], 0, 3);
+		this.n = n;
+	}
+	
+}
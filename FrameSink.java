@@ -0,0 +1,154 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.GZIPOutputStream;
+import javax.imageio.ImageIO;
+
+public class FrameSink implements AutoCloseable {
+	/*
+	 * Writes lattice snapshots to disk from a background thread, for
+	 * making movies of long runs. Works without a display.
+	 * Same handshake as Renderer: acquire() a buffer, fill it with one
+	 * byte code per site (site (i, j) at i*height + j), publish() it.
+	 * Only every 'every'-th acquire() returns a buffer. There are
+	 * 'capacity' buffers, queued or being written; if the encoder has
+	 * fallen behind and none is free the frame is dropped (see
+	 * getDropped()) rather than slowing the simulation. Frames carry
+	 * their capture number, so gaps show in the output.
+	 *
+	 * PNG: one image per frame, path_000000.png, path_000001.png, ...
+	 *      coloured with the palette.
+	 * RAW: one gzip file 'path' with the raw codes. Little-endian:
+	 *      header  int magic "SIRF", int version, int width, int height, int every
+	 *      frame   long capture number, then width*height code bytes
+	 */
+
+	public enum Format { PNG, RAW }
+
+	public static final int MAGIC = 0x46524953; // "SIRF" read as little-endian bytes.
+	public static final int VERSION = 1;
+
+	private final String path;
+	private final int width, height, every;
+	private final int[] palette;
+	private final Format format;
+	private final ConcurrentLinkedQueue<byte[]> free = new ConcurrentLinkedQueue<>();
+	private final ArrayBlockingQueue<Snapshot> queue;
+	private final Thread thread;
+	private long calls = 0, captured = 0, dropped = 0;
+	private volatile IOException failure;
+	private OutputStream raw; // RAW only.
+	private BufferedImage bi; // PNG only.
+	private int[] pixels;
+
+	private static final class Snapshot {
+		final long number;
+		final byte[] codes; // null marks the end of the stream.
+		Snapshot(long number, byte[] codes){
+			this.number = number;
+			this.codes = codes;
+		}
+	}
+
+	public FrameSink(String path, int width, int height, int[] palette, Format format,
+			int every, int capacity) throws IOException{
+		if(width <= 0 || height <= 0 || every <= 0 || capacity <= 0 || palette.length != 256)
+			throw new IllegalArgumentException("width, height, every, capacity > 0 and 256 palette entries.");
+		this.path = path;
+		this.width = width;
+		this.height = height;
+		this.every = every;
+		this.palette = palette.clone();
+		this.format = format;
+		this.queue = new ArrayBlockingQueue<>(capacity + 1); // At most 'capacity' frames: the end marker always fits.
+		for(int k=0; k<capacity; k++) this.free.add(new byte[width*height]);
+		if(format == Format.RAW){
+			this.raw = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16), 1 << 16);
+			ByteBuffer header = ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(every);
+			this.raw.write(header.array());
+		}
+		else{
+			this.bi = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			this.pixels = ((DataBufferInt)this.bi.getRaster().getDataBuffer()).getData();
+		}
+		this.thread = new Thread(this::run, "frame-sink");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	public byte[] acquire(){
+		/*
+		 * A buffer to fill if this call should be captured, else null.
+		 */
+		if(this.calls++ % this.every != 0 || this.failure != null) return null;
+		byte[] frame = this.free.poll();
+		if(frame == null) this.dropped += 1;
+		return frame;
+	}
+
+	public void publish(byte[] frame){
+		this.queue.add(new Snapshot((this.calls - 1) / this.every, frame));
+		this.captured += 1;
+	}
+
+	public long getCaptured(){
+		return this.captured;
+	}
+
+	public long getDropped(){
+		return this.dropped;
+	}
+
+	public void close() throws IOException{
+		/*
+		 * Writes the frames still queued and closes the output.
+		 */
+		this.queue.add(new Snapshot(-1, null));
+		try{
+			this.thread.join();
+		} catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+		if(this.raw != null) this.raw.close();
+		if(this.failure != null) throw this.failure;
+	}
+
+	private void run(){
+		try{
+			while(true){
+				Snapshot frame = this.queue.take();
+				if(frame.codes == null) return;
+				if(this.failure == null) this.write(frame);
+				this.free.add(frame.codes);
+			}
+		} catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void write(Snapshot frame){
+		try{
+			if(this.format == Format.RAW){
+				ByteBuffer number = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+				this.raw.write(number.putLong(frame.number).array());
+				this.raw.write(frame.codes);
+			}
+			else{
+				Renderer.paint(frame.codes, this.palette, this.pixels, this.width, this.height);
+				ImageIO.write(this.bi, "png", new File(String.format("%s_%06d.png", this.path, frame.number)));
+			}
+		} catch(IOException e){
+			this.failure = e; // Reported by close(); later frames are not captured.
+		}
+	}
+
+}
@@ -0,0 +1,73 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("vidamuerte.GridPoint")
+@Label("SIRS Grid Point")
+@Category({"VidaMuerte", "Sweep"})
+@Description("One grid point measured by Sirs.measure(), lasting the whole measurement.")
+@StackTrace(false)
+public class GridPointEvent extends Event {
+	/*
+	 * Recorded by every Sirs.measure() when a flight recording is on:
+	 *   java -XX:StartFlightRecording=filename=run.jfr ...
+	 *   jfr print --events vidamuerte.GridPoint run.jfr
+	 */
+	
+	@Label("Immune Fraction")
+	double fracImmune;
+	
+	@Label("p1")
+	double p1;
+	
+	@Label("p2")
+	double p2;
+	
+	@Label("p3")
+	double p3;
+	
+	@Label("Sites")
+	long sites;
+	
+	@Label("Equilibration Updates")
+	long equilibrationUpdates;
+	
+	@Label("Averaging Updates")
+	long averagingUpdates;
+	
+	@Label("Equilibration Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long equilibrationTime;
+	
+	@Label("Averaging Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long averagingTime;
+	
+	@Label("Site Updates per Second")
+	double siteUpdatesPerSecond;
+	
+	@Label("Infected Fraction")
+	@Description("<I>/N of the point.")
+	double infected;
+	
+	@Label("Infected Error")
+	@Description("Standard error of <I>/N from the blocking analysis.")
+	double infectedError;
+	
+	@Label("Autocorrelation Time")
+	@Description("Integrated autocorrelation time of I, in samples.")
+	double autocorrelationTime;
+	
+	@Label("Samples")
+	long samples;
+	
+	@Label("Lattice Bytes")
+	@DataAmount
+	long latticeBytes;
+	
+}
@@ -0,0 +1,415 @@
+public class HashLife implements LifeEngine {
+	/*
+	 * HashLife (Gosper 1984) backend for Vida. The universe is a
+	 * canonical quadtree: every distinct square of cells exists once in
+	 * a hash-consed node table, and each node memoises its successor,
+	 * the centre half of the square 2^step generations later. Repeated
+	 * or still structure is then advanced for free, and a single call
+	 * can jump 2^k generations.
+	 *
+	 * Vida is a torus, i.e. an infinite plane tiled with copies of the
+	 * N x N universe:
+	 *  - N = 2^m: the tiling itself is a quadtree whose nodes above level
+	 *    m are four copies of one child, so it costs m extra nodes. The
+	 *    successor of such a node is again a tiling, and any level m
+	 *    node of it is the new universe. Jumps of any size are cheap.
+	 *  - other N: a square of side 2N or more is built from the tiling,
+	 *    advanced at most N/2 generations and the universe is read back
+	 *    from its centre. Correct for any N, but every block of
+	 *    generations rebuilds the square; use a power of two for long runs.
+	 *
+	 * The node table is bounded: once it holds more than maxNodes nodes
+	 * it is rebuilt from the current universe, evicting every node (and
+	 * memoised successor) no longer needed. A jump that outgrows it is
+	 * abandoned midway and redone as two halves, so the bound is only
+	 * exceeded when the universe itself, or a single generation of it,
+	 * needs more than maxNodes nodes.
+	 */
+
+	private final int N, m; // m = log2(N) if N is a power of two, else -1.
+	private final long maxNodes;
+	private Node[] table = new Node[1 << 16];
+	private long count = 0;
+	private int nextId = 0, epoch = 0;
+	private int stepLog = -1; // Memoised successors advance 2^stepLog generations.
+	private final Node off, on;
+	private final java.util.ArrayList<Node> empty = new java.util.ArrayList<Node>(); // empty.get(l): empty level l node.
+	private Node tile; // The universe, if N is a power of two.
+	private final BitLife grid; // The universe, otherwise.
+	private long generation = 0;
+	private boolean bounded = true; // successor() abandons the jump once count > maxNodes.
+	private static final Overflow OVERFLOW = new Overflow();
+
+	private static final class Overflow extends RuntimeException {
+		/*
+		 * Unwinds a jump that outgrew the node table; no stack trace.
+		 */
+		private static final long serialVersionUID = 1L;
+		Overflow(){
+			super(null, null, false, false);
+		}
+	}
+
+	private static final class Node {
+		final Node nw, ne, sw, se; // nw: low i, low j; ne: high i, low j; sw: low i, high j.
+		final int level, id;
+		final long population; // Saturates at Long.MAX_VALUE: tiled nodes above level m hold pop*4^(level-m).
+		Node result; // Successor for the current stepLog, or null.
+		Node next; // Hash chain.
+		int mark;
+
+		Node(Node nw, Node ne, Node sw, Node se, int level, long population, int id){
+			this.nw = nw;
+			this.ne = ne;
+			this.sw = sw;
+			this.se = se;
+			this.level = level;
+			this.population = population;
+			this.id = id;
+		}
+	}
+
+	public HashLife(int N){
+		this(N, 1L << 21);
+	}
+
+	public HashLife(int N, long maxNodes){
+		if(N <= 0) throw new IllegalArgumentException("N has to be larger than 0.");
+		if(maxNodes < 1024) throw new IllegalArgumentException("maxNodes >= 1024.");
+		this.N = N;
+		this.maxNodes = maxNodes;
+		this.m = Integer.bitCount(N) == 1 ? Integer.numberOfTrailingZeros(N) : -1;
+		this.off = new Node(null, null, null, null, 0, 0, this.nextId++);
+		this.on = new Node(null, null, null, null, 0, 1, this.nextId++);
+		this.empty.add(this.off);
+		if(this.m >= 0){
+			this.tile = this.empty(this.m);
+			this.grid = null;
+		}
+		else this.grid = new BitLife(N);
+	}
+
+	public int getN(){
+		return this.N;
+	}
+
+	public long getGeneration(){
+		return this.generation;
+	}
+
+	public long getNodeCount(){
+		return this.count;
+	}
+
+	public long population(){
+		return this.m >= 0 ? this.tile.population : this.grid.population();
+	}
+
+	public boolean get(int i, int j){
+		if(this.m < 0) return this.grid.get(i, j);
+		Node n = this.tile;
+		for(int l=this.m; l>0; l--){
+			int half = 1 << (l-1);
+			boolean east = (i & half) != 0, south = (j & half) != 0;
+			n = south ? (east ? n.se : n.sw) : (east ? n.ne : n.nw);
+		}
+		return n == this.on;
+	}
+
+	public void set(int i, int j, boolean alive){
+		if(this.m < 0) this.grid.set(i, j, alive);
+		else this.tile = this.set(this.tile, i, j, alive);
+	}
+
+	private Node set(Node n, int i, int j, boolean alive){
+		if(n.level == 0) return alive ? this.on : this.off;
+		int half = 1 << (n.level-1);
+		boolean east = (i & half) != 0, south = (j & half) != 0;
+		if(!south && !east) return this.join(this.set(n.nw, i, j, alive), n.ne, n.sw, n.se);
+		else if(!south) return this.join(n.nw, this.set(n.ne, i, j, alive), n.sw, n.se);
+		else if(!east) return this.join(n.nw, n.ne, this.set(n.sw, i, j, alive), n.se);
+		else return this.join(n.nw, n.ne, n.sw, this.set(n.se, i, j, alive));
+	}
+
+	public void step(long generations){
+		/*
+		 * Advances 'generations' as jumps of 2^k, largest first.
+		 */
+		for(int k=62; k>=0; k--)
+			if((generations >>> k & 1) != 0) this.advance(k);
+	}
+
+	public void advance(int k){
+		/*
+		 * Advances the universe 2^k generations in one call.
+		 */
+		if(k < 0 || k > 62) throw new IllegalArgumentException("0 <= k <= 62.");
+		if(this.m >= 0) this.jump(k);
+		else{
+			int j = Math.min(k, 31 - Integer.numberOfLeadingZeros(N - 1)); // Blocks of 2^(L-2), 2^(L-1) >= N.
+			for(long b=0; b < 1L << (k - j); b++) this.jump(j);
+		}
+	}
+
+	private void jump(int k){
+		/*
+		 * Advances 2^k generations; if N is not a power of two, one block
+		 * of at most N/2 of them. The universe is only replaced once the
+		 * successor is complete, so a jump abandoned on Overflow leaves
+		 * it as it was.
+		 */
+		try{
+			if(this.m >= 0){
+				int L = Math.max(this.m + 2, k + 2);
+				this.setStep(k);
+				Node big = this.tile;
+				for(int l=this.m; l<L; l++) big = this.join(big, big, big, big);
+				Node n = this.successor(big); // Level L-1, still a tiling of period N.
+				while(n.level > this.m) n = n.nw;
+				this.tile = n;
+			}
+			else{
+				int L = 33 - Integer.numberOfLeadingZeros(N - 1); // 2^(L-1) >= N.
+				this.setStep(k);
+				int offset = 1 << (L-2);
+				Node n = this.successor(this.build(L, -offset, -offset)); // Centre starts at (0, 0).
+				this.extract(n, 0, 0);
+			}
+		} catch(Overflow e){
+			this.collect(); // Drops the unfinished jump.
+			if(k > 0){
+				this.jump(k-1);
+				this.jump(k-1);
+				return;
+			}
+			this.bounded = false; // A single generation cannot be split: let it exceed maxNodes.
+			try{
+				this.jump(0);
+			} finally{
+				this.bounded = true;
+			}
+			return;
+		}
+		this.generation += 1L << k;
+		if(this.count > this.maxNodes) this.collect();
+	}
+
+	private Node build(int level, int x0, int y0){
+		/*
+		 * Square of side 2^level at (x0, y0) of the tiled plane.
+		 */
+		if(level == 0) return this.grid.get(Math.floorMod(x0, N), Math.floorMod(y0, N)) ? this.on : this.off;
+		int half = 1 << (level-1);
+		return this.join(this.build(level-1, x0, y0), this.build(level-1, x0 + half, y0),
+				this.build(level-1, x0, y0 + half), this.build(level-1, x0 + half, y0 + half));
+	}
+
+	private void extract(Node n, int x0, int y0){
+		/*
+		 * Copies the cells of n that fall inside [0, N)^2 into the grid.
+		 */
+		if(x0 >= N || y0 >= N) return;
+		if(n.level == 0){
+			this.grid.set(x0, y0, n == this.on);
+			return;
+		}
+		int half = 1 << (n.level-1);
+		this.extract(n.nw, x0, y0);
+		this.extract(n.ne, x0 + half, y0);
+		this.extract(n.sw, x0, y0 + half);
+		this.extract(n.se, x0 + half, y0 + half);
+	}
+
+	private void setStep(int k){
+		/*
+		 * Memoised successors are only valid for one step size.
+		 */
+		if(k == this.stepLog) return;
+		this.stepLog = k;
+		for(Node head : this.table)
+			for(Node n=head; n!=null; n=n.next) n.result = null;
+	}
+
+	private Node successor(Node n){
+		/*
+		 * Centre of n (level L >= 2) after 2^min(stepLog, L-2) generations.
+		 */
+		if(n.result != null) return n.result;
+		if(this.bounded && this.count > this.maxNodes) throw OVERFLOW;
+		Node result;
+		if(n.population == 0) result = this.empty(n.level-1);
+		else if(n.level == 2) result = this.base(n);
+		else{
+			Node a = n.nw, b = n.ne, c = n.sw, d = n.se;
+			// The nine overlapping squares of level L-1.
+			Node n00 = a, n01 = this.join(a.ne, b.nw, a.se, b.sw), n02 = b;
+			Node n10 = this.join(a.sw, a.se, c.nw, c.ne), n11 = this.join(a.se, b.sw, c.ne, d.nw);
+			Node n12 = this.join(b.sw, b.se, d.nw, d.ne);
+			Node n20 = c, n21 = this.join(c.ne, d.nw, c.se, d.sw), n22 = d;
+			Node r00, r01, r02, r10, r11, r12, r20, r21, r22;
+			if(this.stepLog >= n.level - 2){ // Full speed: two half-steps of 2^(L-3).
+				r00 = this.successor(n00); r01 = this.successor(n01); r02 = this.successor(n02);
+				r10 = this.successor(n10); r11 = this.successor(n11); r12 = this.successor(n12);
+				r20 = this.successor(n20); r21 = this.successor(n21); r22 = this.successor(n22);
+			}
+			else{ // Slower: no time here, all 2^stepLog generations in the second stage.
+				r00 = this.centre(n00); r01 = this.centre(n01); r02 = this.centre(n02);
+				r10 = this.centre(n10); r11 = this.centre(n11); r12 = this.centre(n12);
+				r20 = this.centre(n20); r21 = this.centre(n21); r22 = this.centre(n22);
+			}
+			result = this.join(this.successor(this.join(r00, r01, r10, r11)),
+					this.successor(this.join(r01, r02, r11, r12)),
+					this.successor(this.join(r10, r11, r20, r21)),
+					this.successor(this.join(r11, r12, r21, r22)));
+		}
+		n.result = result;
+		return result;
+	}
+
+	private Node centre(Node n){
+		return this.join(n.nw.se, n.ne.sw, n.sw.ne, n.se.nw);
+	}
+
+	private Node base(Node n){
+		/*
+		 * 4x4 square: the 2x2 centre one generation later.
+		 */
+		int bits = 0; // Bit 4*y + x is cell (x, y).
+		Node[] q = {n.nw, n.ne, n.sw, n.se};
+		for(int k=0; k<4; k++){
+			int qx = (k & 1) << 1, qy = k & 2;
+			if(q[k].nw == this.on) bits |= 1 << (4*qy + qx);
+			if(q[k].ne == this.on) bits |= 1 << (4*qy + qx + 1);
+			if(q[k].sw == this.on) bits |= 1 << (4*(qy+1) + qx);
+			if(q[k].se == this.on) bits |= 1 << (4*(qy+1) + qx + 1);
+		}
+		Node[] out = new Node[4];
+		for(int k=0; k<4; k++){
+			int x = 1 + (k & 1), y = 1 + (k >> 1), neighbours = 0;
+			for(int dy=-1; dy<=1; dy++)
+				for(int dx=-1; dx<=1; dx++)
+					if((dx != 0 || dy != 0) && (bits >>> (4*(y+dy) + x+dx) & 1) != 0) neighbours += 1;
+			boolean alive = (bits >>> (4*y + x) & 1) != 0;
+			out[k] = (neighbours == 3 || (alive && neighbours == 2)) ? this.on : this.off;
+		}
+		return this.join(out[0], out[1], out[2], out[3]);
+	}
+
+	private Node empty(int level){
+		while(this.empty.size() <= level){
+			Node e = this.empty.get(this.empty.size()-1);
+			this.empty.add(this.join(e, e, e, e));
+		}
+		return this.empty.get(level);
+	}
+
+	private static int hash(Node nw, Node ne, Node sw, Node se){
+		int h = nw.id;
+		h = h*0x9E3779B1 + ne.id;
+		h = h*0x9E3779B1 + sw.id;
+		h = h*0x9E3779B1 + se.id;
+		return h ^ (h >>> 15);
+	}
+
+	private Node join(Node nw, Node ne, Node sw, Node se){
+		/*
+		 * The canonical node with these four children.
+		 */
+		int slot = hash(nw, ne, sw, se) & (this.table.length-1);
+		for(Node n=this.table[slot]; n!=null; n=n.next)
+			if(n.nw == nw && n.ne == ne && n.sw == sw && n.se == se) return n;
+		Node n = new Node(nw, ne, sw, se, nw.level+1,
+				add(add(nw.population, ne.population), add(sw.population, se.population)), this.nextId++);
+		this.insert(n, slot);
+		return n;
+	}
+
+	private static long add(long a, long b){
+		/*
+		 * Saturating sum of two populations, so a live node never wraps
+		 * round to 0 and passes for empty in successor().
+		 */
+		long sum = a + b;
+		return sum < 0 ? Long.MAX_VALUE : sum;
+	}
+
+	private void insert(Node n, int slot){
+		n.next = this.table[slot];
+		this.table[slot] = n;
+		this.count += 1;
+		if(this.count > 2L*this.table.length && this.table.length < (1 << 30)){
+			Node[] old = this.table;
+			this.table = new Node[2*old.length];
+			this.count = 0;
+			for(Node head : old)
+				for(Node k=head, next; k!=null; k=next){
+					next = k.next;
+					this.insert(k, hash(k.nw, k.ne, k.sw, k.se) & (this.table.length-1));
+				}
+		}
+	}
+
+	private void collect(){
+		/*
+		 * Rebuilds the table with the nodes reachable from the universe
+		 * (and from their memoised successors). If that is still too
+		 * large, the memoised successors are dropped as well.
+		 */
+		for(int pass=0; pass<2; pass++){
+			Node[] old = this.table;
+			this.table = new Node[1 << 16];
+			this.count = 0;
+			this.epoch += 1;
+			if(pass == 1)
+				for(Node head : old)
+					for(Node n=head; n!=null; n=n.next) n.result = null;
+			for(Node e : this.empty) this.keep(e);
+			if(this.tile != null) this.keep(this.tile);
+			if(this.count <= this.maxNodes/2) return;
+		}
+	}
+
+	private void keep(Node n){
+		if(n.level == 0 || n.mark == this.epoch) return;
+		n.mark = this.epoch;
+		this.keep(n.nw);
+		this.keep(n.ne);
+		this.keep(n.sw);
+		this.keep(n.se);
+		if(n.result != null) this.keep(n.result);
+		this.insert(n, hash(n.nw, n.ne, n.sw, n.se) & (this.table.length-1));
+	}
+
+	public static void main(String[] args){
+		/*
+		 * Checks HashLife against BitLife, and that a still life (a 2x2
+		 * block) survives jumps of 2^40 to 2^62 generations.
+		 * Usage: java HashLife [N] [generations]
+		 */
+		int N = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+		long generations = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+		BitLife reference = new BitLife(N);
+		HashLife hash = new HashLife(N);
+		reference.randomise(new Xoshiro256(1));
+		for(int i=0; i<N; i++)
+			for(int j=0; j<N; j++) hash.set(i, j, reference.get(i, j));
+		reference.step(generations);
+		hash.step(generations);
+		boolean same = true;
+		for(int i=0; i<N; i++)
+			for(int j=0; j<N; j++) same &= reference.get(i, j) == hash.get(i, j);
+		System.out.println("bit for bit:  " + same);
+		boolean still = true;
+		for(int k=40; k<=62; k++){
+			HashLife block = new HashLife(Integer.highestOneBit(N));
+			block.set(1, 1, true);
+			block.set(1, 2, true);
+			block.set(2, 1, true);
+			block.set(2, 2, true);
+			block.advance(k);
+			still &= block.population() == 4 && block.get(1, 1) && block.get(2, 2);
+		}
+		System.out.println("still life:   " + still);
+	}
+
+}
@@ -0,0 +1,176 @@
+public class KineticUpdater {
+	/*
+	 * Rejection-free (n-fold way) version of the random-sequential 
+	 * SIRS dynamics of Sirs.updateRandomSirs().
+	 * 
+	 * In the random-sequential dynamics a step picks one of the N sites
+	 * uniformly and changes it with probability
+	 *     p2 if it is I,   p3 if it is R,
+	 *     p1 if it is S with at least one infected Nearest Neighbour,
+	 * and does nothing otherwise. The sites that can change are kept in
+	 * three indexed sets (I, R and "active" S), so the probability that
+	 * a step does something is Q = (nI*p2 + nR*p3 + nA*p1)/N. The number
+	 * of null steps before the next effective one is geometric with 
+	 * parameter Q and is skipped in one draw; the site that changes is
+	 * then chosen in proportion to its rate. This is the same Markov 
+	 * chain, only without the rejected steps.
+	 * Boundary Conditions: PERIODIC
+	 */
+	
+	private static final int SET_I = 0, SET_R = 1, SET_A = 2;
+	private final int Nx, Ny;
+	private final Rng rng;
+	private final int[][] sets = new int[3][]; // Members of I, R and active S.
+	private final int[] size = new int[3];
+	private final int[] pos; // Position of each site in its set, -1 if in none.
+	private final byte[] nInf; // Number of infected Nearest Neighbours of each site.
+	private Lattice state;
+	
+	public KineticUpdater(int Nx, int Ny, Rng rng){
+		/*
+		 * The sets take 13 bytes of heap per site: up to 2^31 sites.
+		 * Larger lattices use the SERIAL or DOMAIN engine.
+		 */
+		if((long)Nx*Ny > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException("KineticUpdater: Nx*Ny < 2^31.");
+		this.Nx = Nx;
+		this.Ny = Ny;
+		this.rng = rng.split();
+		for(int s=0; s<3; s++) this.sets[s] = new int[Nx*Ny];
+		this.pos = new int[Nx*Ny];
+		this.nInf = new byte[Nx*Ny];
+	}
+	
+	public void rebuild(Lattice state){
+		/*
+		 * (Re)builds the sets and neighbour counts from 'state', which 
+		 * must be called whenever the lattice is changed by anything 
+		 * other than advance().
+		 */
+		this.state = state;
+		this.size[SET_I] = this.size[SET_R] = this.size[SET_A] = 0;
+		java.util.Arrays.fill(this.nInf, (byte)0);
+		for(int idx=0; idx<Nx*Ny; idx++){
+			this.pos[idx] = -1;
+			if(state.get(idx) == 1)
+				for(int nn : this.neighbours(idx)) this.nInf[nn] += 1;
+		}
+		for(int idx=0; idx<Nx*Ny; idx++){
+			byte siteState = state.get(idx);
+			if(siteState == 1) this.add(SET_I, idx);
+			else if(siteState == 2) this.add(SET_R, idx);
+			else if(siteState == 0 && this.nInf[idx] > 0) this.add(SET_A, idx);
+		}
+	}
+	
+	public long advance(long steps, double[] p, double[] sir, boolean stopAtAbsorbing){
+		/*
+		 * Advances the lattice by 'steps' random-sequential steps,
+		 * updating the populations in sir[] = {S, I, R}.
+		 * If stopAtAbsorbing==True, returns early once there are no
+		 * infected sites. Returns the number of steps consumed.
+		 */
+		double N = (double)Nx*Ny;
+		long remaining = steps;
+		while(remaining > 0){
+			if(stopAtAbsorbing && this.size[SET_I] == 0) break;
+			double rI = this.size[SET_I]*p[1], rR = this.size[SET_R]*p[2], 
+					rA = this.size[SET_A]*p[0], rate = rI + rR + rA;
+			if(rate <= 0){ // Frozen: nothing can change any more.
+				remaining = 0;
+				break;
+			}
+			double Q = Math.min(1., rate/N);
+			long skip = 0; // Null steps before the next effective one.
+			if(Q < 1.){
+				double k = Math.floor(Math.log(1. - this.rng.nextDouble()) / Math.log1p(-Q));
+				skip = k < remaining ? (long)k : remaining;
+			}
+			if(skip >= remaining){
+				remaining = 0;
+				break;
+			}
+			remaining -= skip + 1;
+			double r = this.rng.nextDouble()*rate;
+			if(r < rI) this.recover(this.pick(SET_I), sir);
+			else if(r < rI + rR) this.lose(this.pick(SET_R), sir);
+			else this.infect(this.pick(SET_A), sir);
+		}
+		return steps - remaining;
+	}
+	
+	private int pick(int set){
+		return this.sets[set][this.rng.nextInt(this.size[set])];
+	}
+	
+	private void recover(int idx, double[] sir){
+		/*
+		 * I -> R
+		 */
+		this.remove(SET_I, idx);
+		this.state.set(idx, (byte)2);
+		this.add(SET_R, idx);
+		for(int nn : this.neighbours(idx)){
+			this.nInf[nn] -= 1;
+			if(this.nInf[nn] == 0 && this.state.get(nn) == 0) this.remove(SET_A, nn);
+		}
+		sir[1] -= 1;
+		sir[2] += 1;
+	}
+	
+	private void lose(int idx, double[] sir){
+		/*
+		 * R -> S
+		 */
+		this.remove(SET_R, idx);
+		this.state.set(idx, (byte)0);
+		if(this.nInf[idx] > 0) this.add(SET_A, idx);
+		sir[2] -= 1;
+		sir[0] += 1;
+	}
+	
+	private void infect(int idx, double[] sir){
+		/*
+		 * S -> I
+		 */
+		this.remove(SET_A, idx);
+		this.state.set(idx, (byte)1);
+		this.add(SET_I, idx);
+		for(int nn : this.neighbours(idx)){
+			this.nInf[nn] += 1;
+			if(this.nInf[nn] == 1 && this.state.get(nn) == 0) this.add(SET_A, nn);
+		}
+		sir[0] -= 1;
+		sir[1] += 1;
+	}
+	
+	private final int[] nn = new int[4];
+	
+	private int[] neighbours(int idx){
+		/*
+		 * Nearest Neighbours of a site, returned in a reused array.
+		 */
+		int i = idx / Ny, j = idx - i*Ny;
+		this.nn[0] = ((i+1) % Nx)*Ny + j;
+		this.nn[1] = ((i-1+Nx) % Nx)*Ny + j;
+		this.nn[2] = i*Ny + (j+1) % Ny;
+		this.nn[3] = i*Ny + (j-1+Ny) % Ny;
+		return this.nn;
+	}
+	
+	private void add(int set, int idx){
+		this.pos[idx] = this.size[set];
+		this.sets[set][this.size[set]++] = idx;
+	}
+	
+	private void remove(int set, int idx){
+		/*
+		 * Moves the last member into the freed slot.
+		 */
+		int k = this.pos[idx], last = this.sets[set][--this.size[set]];
+		this.sets[set][k] = last;
+		this.pos[last] = k;
+		this.pos[idx] = -1;
+	}
+	
+}
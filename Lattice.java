@@ -0,0 +1,35 @@
+public interface Lattice {
+	/*
+	 * Storage backend for an Nx x Ny lattice of small integer site
+	 * states. Sites are addressed by a flat index idx = i*Ny + j, so
+	 * a row (fixed i) is contiguous in memory. Indices are long: 
+	 * lattices may hold more than 2^31 sites (see OffHeapLattice).
+	 */
+	
+	int getNx();
+	
+	int getNy();
+	
+	long size();
+	
+	byte get(long idx);
+	
+	void set(long idx, byte siteState);
+	
+	void copyTo(Lattice other);
+	
+	default void get(long from, byte[] dst, int offset, int length){
+		/*
+		 * Bulk read of sites [from, from+length) into dst[offset...].
+		 */
+		for(int k=0; k<length; k++) dst[offset + k] = this.get(from + k);
+	}
+	
+	default void set(long from, byte[] src, int offset, int length){
+		/*
+		 * Bulk write of src[offset...] into sites [from, from+length).
+		 */
+		for(int k=0; k<length; k++) this.set(from + k, src[offset + k]);
+	}
+	
+}
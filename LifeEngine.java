@@ -0,0 +1,48 @@
+public interface LifeEngine {
+	/*
+	 * Game of Life stepping backend for Vida on an N x N torus. Cell
+	 * (i, j) follows Vida's life[i][j] convention: i is the column 
+	 * (x on screen), j the row (y on screen).
+	 */
+	
+	int getN();
+	
+	boolean get(int i, int j);
+	
+	void set(int i, int j, boolean alive);
+	
+	void step(long generations);
+	
+	long getGeneration();
+	
+	default void randomise(Rng rng){
+		/*
+		 * Every cell alive with probability 1/2.
+		 */
+		for(int i=0; i<this.getN(); i++)
+			for(int j=0; j<this.getN(); j++)
+				this.set(i, j, rng.nextLong() < 0);
+	}
+	
+	default void load(int[][] life){
+		for(int i=0; i<this.getN(); i++)
+			for(int j=0; j<this.getN(); j++)
+				this.set(i, j, life[i][j] == 1);
+	}
+	
+	default void store(int[][] life){
+		for(int i=0; i<this.getN(); i++)
+			for(int j=0; j<this.getN(); j++)
+				life[i][j] = this.get(i, j) ? 1 : 0;
+	}
+	
+	default void store(byte[] codes){
+		/*
+		 * Writes cell (i, j) to codes[i*N + j], 1 alive and 0 dead.
+		 */
+		for(int i=0; i<this.getN(); i++)
+			for(int j=0; j<this.getN(); j++)
+				codes[i*this.getN() + j] = (byte)(this.get(i, j) ? 1 : 0);
+	}
+	
+}
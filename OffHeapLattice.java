@@ -0,0 +1,129 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public final class OffHeapLattice implements Lattice {
+	/*
+	 * One byte per site outside the Java heap, for lattices too big for
+	 * a byte[] (more than 2^31 sites, e.g. 50000 x 50000) or for the
+	 * heap. The sites are split into chunks of 2^30 bytes, each a direct
+	 * ByteBuffer or a region of a memory-mapped file (see map()), so a
+	 * site is found by idx >>> 30 and idx & (2^30 - 1).
+	 * A mapped lattice is paged in and out by the operating system and
+	 * can be larger than physical memory; force() writes it to disk.
+	 * Direct chunks count against -XX:MaxDirectMemorySize.
+	 */
+
+	private static final int CHUNK_BITS = 30;
+	private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+	private final int Nx, Ny;
+	private final long size;
+	private final ByteBuffer[] chunks;
+
+	public OffHeapLattice(int Nx, int Ny){
+		/*
+		 * Lattice in direct (native) memory, all sites 0.
+		 */
+		this(Nx, Ny, null);
+	}
+
+	private OffHeapLattice(int Nx, int Ny, FileChannel channel){
+		if(Nx <= 0 || Ny <= 0) throw new IllegalArgumentException("Nx, Ny > 0.");
+		this.Nx = Nx;
+		this.Ny = Ny;
+		this.size = (long)Nx*Ny;
+		this.chunks = new ByteBuffer[(int)((this.size + CHUNK_MASK) >>> CHUNK_BITS)];
+		try{
+			for(int c=0; c<this.chunks.length; c++){
+				long from = (long)c << CHUNK_BITS;
+				int length = (int)Math.min(this.size - from, 1L << CHUNK_BITS);
+				this.chunks[c] = channel == null ? ByteBuffer.allocateDirect(length) :
+						channel.map(FileChannel.MapMode.READ_WRITE, from, length);
+			}
+		} catch(IOException e){
+			throw new java.io.UncheckedIOException(e);
+		}
+	}
+
+	public static OffHeapLattice map(String path, int Nx, int Ny) throws IOException{
+		/*
+		 * Lattice backed by the file 'path', created or grown to Nx*Ny
+		 * bytes. The mapping outlives the channel, which is closed here.
+		 */
+		try(FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)){
+			return new OffHeapLattice(Nx, Ny, channel);
+		}
+	}
+
+	public int getNx(){
+		return this.Nx;
+	}
+
+	public int getNy(){
+		return this.Ny;
+	}
+
+	public long size(){
+		return this.size;
+	}
+
+	public byte get(long idx){
+		return this.chunks[(int)(idx >>> CHUNK_BITS)].get((int)(idx & CHUNK_MASK));
+	}
+
+	public void set(long idx, byte siteState){
+		this.chunks[(int)(idx >>> CHUNK_BITS)].put((int)(idx & CHUNK_MASK), siteState);
+	}
+
+	public void get(long from, byte[] dst, int offset, int length){
+		while(length > 0){
+			ByteBuffer chunk = this.chunks[(int)(from >>> CHUNK_BITS)];
+			int at = (int)(from & CHUNK_MASK), n = Math.min(length, chunk.capacity() - at);
+			chunk.get(at, dst, offset, n);
+			from += n;
+			offset += n;
+			length -= n;
+		}
+	}
+
+	public void set(long from, byte[] src, int offset, int length){
+		while(length > 0){
+			ByteBuffer chunk = this.chunks[(int)(from >>> CHUNK_BITS)];
+			int at = (int)(from & CHUNK_MASK), n = Math.min(length, chunk.capacity() - at);
+			chunk.put(at, src, offset, n);
+			from += n;
+			offset += n;
+			length -= n;
+		}
+	}
+
+	public void copyTo(Lattice other){
+		if(other.getNx() != this.Nx || other.getNy() != this.Ny)
+			throw new IllegalArgumentException("Lattices of different size.");
+		if(other instanceof OffHeapLattice){
+			ByteBuffer[] to = ((OffHeapLattice)other).chunks;
+			for(int c=0; c<this.chunks.length; c++)
+				to[c].put(0, this.chunks[c], 0, this.chunks[c].capacity());
+			return;
+		}
+		byte[] buffer = new byte[1 << 16];
+		for(long from=0; from<this.size; from+=buffer.length){
+			int n = (int)Math.min(buffer.length, this.size - from);
+			this.get(from, buffer, 0, n);
+			other.set(from, buffer, 0, n);
+		}
+	}
+
+	public void force(){
+		/*
+		 * Writes a mapped lattice to its file; nothing to do otherwise.
+		 */
+		for(ByteBuffer chunk : this.chunks)
+			if(chunk instanceof MappedByteBuffer) ((MappedByteBuffer)chunk).force();
+	}
+
+}
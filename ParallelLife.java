@@ -0,0 +1,93 @@
+import java.util.concurrent.Phaser;
+
+public class ParallelLife extends BitLife {
+	/*
+	 * Multi-threaded BitLife. Two bit-packed buffers are swapped every
+	 * generation and the lines are split into one band per worker. The
+	 * workers are started once and wait on a Phaser: one phase per
+	 * generation, so there is a single barrier between generations and
+	 * no task is created per generation. Each line is computed exactly
+	 * as BitLife does, so the cells match a single-threaded run bit 
+	 * for bit.
+	 */
+	
+	private final Thread[] workers;
+	private final Phaser phaser;
+	private volatile long target; // Generation the workers run up to.
+	private volatile boolean running = true;
+	
+	public ParallelLife(int N, int nThreads){
+		/*
+		 * nThreads <= 0 uses every available core.
+		 */
+		super(N);
+		int nBands = Math.min(N, nThreads > 0 ? nThreads : Runtime.getRuntime().availableProcessors());
+		this.phaser = new Phaser(nBands + 1); // The workers and the caller of step().
+		this.workers = new Thread[nBands];
+		for(int b=0; b<nBands; b++){
+			final int from = (int)((long)b*N/nBands), to = (int)((long)(b+1)*N/nBands);
+			this.workers[b] = new Thread(() -> this.work(from, to), "life-band-" + b);
+			this.workers[b].setDaemon(true);
+			this.workers[b].start();
+		}
+	}
+	
+	private void work(int from, int to){
+		/*
+		 * Phase 2g: wait for step(); then one generation per phase until
+		 * 'target', the buffer parity giving source and destination.
+		 */
+		int phase = 0;
+		while(true){
+			phase = this.phaser.arriveAndAwaitAdvance(); // Released by step() or shutdown().
+			if(!this.running || phase < 0) return;
+			// Read once: step() may set the next call's target before this worker is done.
+			long start = this.generation, end = this.target;
+			for(long g=start; g<end; g++){
+				long[] src = ((g - start) & 1) == 0 ? this.cells : this.next;
+				long[] dst = ((g - start) & 1) == 0 ? this.next : this.cells;
+				stepLines(src, dst, N, W, lastMask, from, to);
+				this.phaser.arriveAndAwaitAdvance(); // Every band done before the next generation.
+			}
+		}
+	}
+	
+	public void step(long generations){
+		if(generations <= 0) return;
+		this.target = this.generation + generations;
+		this.phaser.arriveAndAwaitAdvance(); // Start the workers.
+		for(long g=0; g<generations; g++)
+			this.phaser.arriveAndAwaitAdvance();
+		if((generations & 1) != 0){
+			long[] aux = this.cells;
+			this.cells = this.next;
+			this.next = aux;
+		}
+		this.generation = this.target;
+	}
+	
+	public void shutdown(){
+		this.running = false;
+		this.phaser.forceTermination();
+	}
+	
+	public static void main(String[] args){
+		/*
+		 * Checks the parallel stepping against single-threaded BitLife 
+		 * and reports the rates. Usage: java ParallelLife [N] [generations] [threads]
+		 */
+		int N = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		long generations = args.length > 1 ? Long.parseLong(args[1]) : 100;
+		int nThreads = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+		BitLife reference = new BitLife(N);
+		ParallelLife parallel = new ParallelLife(N, nThreads);
+		reference.randomise(new Xoshiro256(1));
+		parallel.randomise(new Xoshiro256(1));
+		System.out.println("BitLife:      " + reference.generationsPerSecond(generations) + " gen/s");
+		System.out.println("ParallelLife: " + parallel.generationsPerSecond(generations) + " gen/s (" + 
+				parallel.workers.length + " bands)");
+		System.out.println("bit for bit:  " + java.util.Arrays.equals(reference.cells, parallel.cells));
+		parallel.shutdown();
+	}
+	
+}
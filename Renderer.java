@@ -0,0 +1,122 @@
+import java.awt.Frame;
+import java.awt.Graphics;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+public class Renderer {
+	/*
+	 * Draws lattice snapshots in a window from its own thread. The
+	 * simulation asks for a free frame with acquire(), fills it with
+	 * one byte code per site (site (i, j) at i*height + j) and hands it
+	 * back with publish(). Neither call ever waits: acquire() returns
+	 * null when the frame rate cap has not elapsed or both frames are
+	 * busy, and the simulation just carries on.
+	 * Codes are turned into pixels through a 256 entry palette written
+	 * straight into the image's int raster.
+	 */
+
+	private final int width, height; // Lattice extent: width columns of height sites.
+	private final int[] palette; // RGB colour of code c is palette[c & 0xFF].
+	private final BufferedImage bi;
+	private final int[] pixels; // The raster of bi, pixel (x, y) at y*width + x.
+	private final Frame f;
+	private final long period; // Minimum time between frames, in nanoseconds.
+	private long due = 0; // Earliest time acquire() hands out a frame.
+	private final ConcurrentLinkedQueue<byte[]> free = new ConcurrentLinkedQueue<>();
+	private final AtomicReference<byte[]> pending = new AtomicReference<>();
+	private final Thread thread;
+	private volatile boolean running = true;
+
+	public Renderer(String title, int width, int height, int[] palette,
+			int windowWidth, int windowHeight, double maxFps){
+		if(width <= 0 || height <= 0 || palette.length != 256 || maxFps <= 0)
+			throw new IllegalArgumentException("width, height, maxFps > 0 and 256 palette entries.");
+		this.width = width;
+		this.height = height;
+		this.palette = palette.clone();
+		this.bi = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		this.pixels = ((DataBufferInt)this.bi.getRaster().getDataBuffer()).getData();
+		this.period = (long)(1e9 / maxFps);
+		this.free.add(new byte[width*height]);
+		this.free.add(new byte[width*height]);
+
+		this.f = new Frame();
+		this.f.setIgnoreRepaint(true);
+		this.f.setTitle(title);
+		this.f.setVisible(true);
+		this.f.setSize(windowWidth, windowHeight + this.f.getInsets().top);
+		this.f.addWindowListener(new WindowAdapter()
+		{public void windowClosing(WindowEvent we) {System.exit(0);}});
+
+		this.thread = new Thread(this::run, "renderer");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	public Frame getFrame(){
+		return this.f;
+	}
+
+	public byte[] acquire(){
+		/*
+		 * A frame to fill with site codes, or null if none is wanted now.
+		 */
+		if(System.nanoTime() < this.due) return null;
+		return this.free.poll();
+	}
+
+	public void publish(byte[] frame){
+		/*
+		 * Hands a frame filled after acquire() to the drawing thread.
+		 */
+		this.due = System.nanoTime() + this.period;
+		byte[] old = this.pending.getAndSet(frame);
+		if(old != null) this.free.add(old); // Not drawn yet, the newer one replaces it.
+		LockSupport.unpark(this.thread);
+	}
+
+	public void close(){
+		this.running = false;
+		LockSupport.unpark(this.thread);
+		this.f.dispose();
+	}
+
+	private void run(){
+		while(this.running){
+			byte[] frame = this.pending.getAndSet(null);
+			if(frame == null){
+				LockSupport.park(this);
+				continue;
+			}
+			this.draw(frame);
+			this.free.add(frame);
+		}
+	}
+
+	static void paint(byte[] codes, int[] palette, int[] pixels, int width, int height){
+		/*
+		 * Site (i, j) at codes[i*height + j] becomes pixel (i, j) at
+		 * pixels[j*width + i].
+		 */
+		for(int i=0; i<width; i++){
+			int base = i*height;
+			for(int j=0, px=i; j<height; j++, px+=width)
+				pixels[px] = palette[codes[base + j] & 0xFF];
+		}
+	}
+
+	private void draw(byte[] frame){
+		paint(frame, this.palette, this.pixels, this.width, this.height);
+		Graphics g = this.f.getGraphics();
+		if(g == null) return; // Window not displayable (closing).
+		int top = this.f.getInsets().top;
+		g.drawImage(this.bi, 0, top, this.f.getWidth(), this.f.getHeight() - top, null);
+		g.dispose();
+	}
+
+}
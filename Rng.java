@@ -0,0 +1,93 @@
+public interface Rng {
+	/*
+	 * Minimal per-instance random number generator used by the
+	 * simulations. Implementations are not thread safe: give every
+	 * thread (or lattice) its own generator, e.g. through split().
+	 */
+	
+	int BLOCK = 1024; // Draws per nextLongs() call in the lattice updaters.
+	
+	long nextLong();
+	
+	default void nextLongs(long[] dst, int n){
+		/*
+		 * Fills dst[0, n) with the next n values of nextLong(), in 
+		 * order. Implementations keep their state in locals for the
+		 * whole block.
+		 */
+		for(int k=0; k<n; k++) dst[k] = this.nextLong();
+	}
+	
+	static long threshold(double p){
+		/*
+		 * Integer form of the acceptance test rand <= p: with 
+		 * u = nextLong() >>> 11, u < threshold(p) exactly when 
+		 * u * 2^-53 (= nextDouble()) <= p. p*2^53 is exact, so
+		 * this is the same test, without the conversion to double.
+		 */
+		if(!(p >= 0)) return 0;
+		return (long)(Math.min(p, 1.) * 0x1.0p53) + 1;
+	}
+	
+	Rng split(); // A new generator with a statistically independent stream.
+	
+	default double nextDouble(){
+		/*
+		 * Uniform double in [0, 1) built from the top 53 bits.
+		 */
+		return (this.nextLong() >>> 11) * 0x1.0p-53;
+	}
+	
+	default int nextInt(int bound){
+		/*
+		 * Uniform int in [0, bound) using the multiply-shift
+		 * reduction of the top 32 bits (bias below 2^-32 * bound).
+		 */
+		return (int)(((this.nextLong() >>> 32) * bound) >>> 32);
+	}
+	
+	static Rng create(String name, long seed){
+		/*
+		 * Factory so generators can be chosen by name, e.g. from
+		 * the command line.
+		 */
+		if(name.equalsIgnoreCase("xoshiro")) return new Xoshiro256(seed);
+		else if(name.equalsIgnoreCase("splitmix")) return new SplitMix64(seed);
+		else throw new IllegalArgumentException("Unknown generator: " + name);
+	}
+	
+	public static void main(String[] args){
+		/*
+		 * Rough throughput comparison of the available generators
+		 * against Math.random(). Usage: java Rng [draws]
+		 */
+		long draws = args.length > 0 ? Long.parseLong(args[0]) : 200000000L;
+		Rng[] rngs = {new Xoshiro256(1), new SplitMix64(1)};
+		long[] block = new long[BLOCK];
+		for(int rep=0; rep<2; rep++){
+			for(Rng r : rngs){
+				double sum = 0.;
+				long t0 = System.nanoTime();
+				for(long n=0; n<draws; n++) sum += r.nextDouble();
+				long t1 = System.nanoTime();
+				System.out.println(r.getClass().getSimpleName() + ": " + 
+						draws/((t1-t0)/1000.) + " Mdraws/s (" + sum/draws + ")");
+				long sumBits = 0;
+				t0 = System.nanoTime();
+				for(long n=0; n<draws; n+=BLOCK){
+					r.nextLongs(block, BLOCK);
+					for(long x : block) sumBits += x >>> 11;
+				}
+				t1 = System.nanoTime();
+				System.out.println(r.getClass().getSimpleName() + " blocks: " + 
+						draws/((t1-t0)/1000.) + " Mdraws/s (" + sumBits*0x1.0p-53/draws + ")");
+			}
+			double sum = 0.;
+			long t0 = System.nanoTime();
+			for(long n=0; n<draws; n++) sum += Math.random();
+			long t1 = System.nanoTime();
+			System.out.println("Math.random: " + draws/((t1-t0)/1000.) + " Mdraws/s (" + sum/draws + ")");
+		}
+	}
+	
+}
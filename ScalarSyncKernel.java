@@ -0,0 +1,68 @@
+public final class ScalarSyncKernel implements SyncKernel {
+	/*
+	 * One site at a time, reading the lattices directly.
+	 * Boundary Conditions: PERIODIC
+	 */
+
+	private final int Nx, Ny;
+	private final int[] yPlus1, yMinus1;
+	private final long[] draws = new long[Rng.BLOCK]; // Acceptance draws, one per site.
+
+	public ScalarSyncKernel(int Nx, int Ny){
+		this.Nx = Nx;
+		this.Ny = Ny;
+		this.yPlus1 = new int[Ny];
+		this.yMinus1 = new int[Ny];
+		for(int j=0; j<Ny; j++){
+			this.yPlus1[j] = (j+1) % Ny;
+			this.yMinus1[j] = (j-1+Ny) % Ny;
+		}
+	}
+
+	public void rows(Lattice src, Lattice dst, int from, int to, long t1, long t2, long t3, Rng rng, long[] delta){
+		long dS = 0, dI = 0, dR = 0;
+		long[] draws = this.draws;
+		long left = (long)(to - from)*Ny; // Sites of the range not drawn for yet.
+		int k = draws.length;
+		for(int i=from; i<to; i++){
+			long row = (long)i*Ny, up = (long)((i+1) % Nx)*Ny, down = (long)((i-1+Nx) % Nx)*Ny;
+			for(int j=0; j<Ny; j++){
+				long idx = row + j;
+				byte siteState = src.get(idx), newState = siteState;
+				if(k == draws.length){ // Only as many draws as sites left, so the stream is unchanged.
+					int n = (int)Math.min(draws.length, left);
+					rng.nextLongs(draws, n);
+					left -= n;
+					k = 0;
+				}
+				long rand = draws[k++] >>> 11;
+				if(siteState == 1){
+					if(rand < t2){
+						newState = 2;
+						dI -= 1;
+						dR += 1;
+					}
+				}
+				else if(siteState == 2){
+					if(rand < t3){
+						newState = 0;
+						dR -= 1;
+						dS += 1;
+					}
+				}
+				else if(siteState == 0 && rand < t1 && (src.get(up + j) == 1 ||
+						src.get(down + j) == 1 || src.get(row + yPlus1[j]) == 1 ||
+						src.get(row + yMinus1[j]) == 1)){
+					newState = 1;
+					dS -= 1;
+					dI += 1;
+				}
+				dst.set(idx, newState);
+			}
+		}
+		delta[0] += dS;
+		delta[1] += dI;
+		delta[2] += dR;
+	}
+
+}
@@ -1,36 +1,91 @@
-import java.awt.Color;
-import java.awt.Frame;
-import java.awt.event.WindowAdapter;
-import java.awt.event.WindowEvent;
-import java.awt.image.BufferedImage;
+import java.awt.GraphicsEnvironment;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.io.UnsupportedEncodingException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 public class Sirs {
 	
 	private int Nx = 100, Ny = 5;
-	private int[][] state = new int[Nx][Ny];
+	private long sites = (long)Nx*Ny; // Number of sites, may exceed 2^31.
+	private Lattice state = new ByteLattice(Nx, Ny); // Flat lattice, site (i, j) lives at i*Ny + j.
 	private double[] sir = new double[3]; // This stores populations, so no time is lost averaging.
-	private int[] xPlus1 = new int[Nx], xMinus1 = new int[Nx],
-			yPlus1 = new int[Ny], yMinus1 = new int[Ny]; // For Nearest Neighbours calculations.
+	private long[] xPlus1 = new long[Nx], xMinus1 = new long[Nx]; // For Nearest Neighbours calculations.
+	private int[] yPlus1 = new int[Ny], yMinus1 = new int[Ny];
+	private long[] row = new long[Nx]; // row[i] = i*Ny, the flat index of site (i, 0).
 	private double[] p = {1./3., 1./3., 1./3.}; // {p1, p2, p3}
-	private final BufferedImage bi;
-	private final Frame f = new Frame();
+	private Rng rng = new Xoshiro256(System.nanoTime()); // Per-instance generator, see setRng().
+	private final long[] draws = new long[Rng.BLOCK]; // Block of random draws, see updateRandomBlock().
+	private SyncUpdater sync; // Synchronous update, created on first use.
+	private DomainUpdater domain; // Multi-threaded random-sequential update, created on first use.
+	private KineticUpdater kinetic; // Rejection-free random-sequential update, created on first use.
+	private boolean kineticStale = true; // The lattice changed outside the kinetic engine.
+	private RandomEngine engine = RandomEngine.SERIAL;
+	private double tolerance = 0.; // Equilibration drift tolerance, <= 0 (default) always runs NStabilise.
+	private int window = 50; // Equilibration window, in sweeps.
+	private String checkpointPath; // Progress file of getp1_p3Data()/getImmunity(), null for none.
+	private long checkpointInterval; // Nanoseconds between checkpoints within a grid point.
+	private long lastCheckpoint;
+	private Checkpoint run; // Progress of the checkpointed sweep under way.
+	private boolean continuation = false; // Grid points start from the previous point's lattice.
+	private boolean warm = false; // The lattice holds the previous point of the same line.
+	private SweepMonitor monitor; // Progress over JMX, null for none.
+	private double precision = 0.; // Target standard error of <I>/N, <= 0 always takes NAvg samples.
+	private boolean ensemble = false; // getMCData() runs synchronous replicas 64 at a time.
+	
+	public enum RandomEngine {
+		SERIAL, // updateRandomSirs() one site at a time.
+		DOMAIN, // Checkerboard domain decomposition over threads, an approximation, see DomainUpdater.
+		KINETIC // Rejection-free n-fold way, skips the null steps, see KineticUpdater.
+	}
+	private Lattice next; // Second buffer for the synchronous update.
+	private Renderer view; // Only created by init(), and never without a display.
+	private FrameSink sink; // Optional movie output, see setFrameSink().
+	private static final int[] PALETTE = new int[256]; // Site colours (RGB), indexed by state & 0xFF.
+	static {
+		java.util.Arrays.fill(PALETTE, 0x0000FF); // Recovered and immune: blue.
+		PALETTE[0] = 0xFF0000; // Susceptible: red.
+		PALETTE[1] = 0x00FF00; // Infected: green.
+	}
 	
 	public Sirs(int Nx, int Ny, double[] p){
+		/*
+		 * Lattices of more than 2^31 sites live off the heap, see
+		 * OffHeapLattice and setLattice().
+		 */
 		if(Nx > 0 && Ny > 0){
 			this.Nx = Nx;
 			this.Ny = Ny;
-			this.state = new int[Nx][Ny];
+			this.sites = (long)Nx*Ny;
+			this.state = this.newLattice();
 			this.setAuxiliary();// For Nearest Neighbours calculations.
 			this.randomState();
 			this.setProbs(p);
-			this.bi = new BufferedImage(this.Nx, this.Ny,
-					BufferedImage.TYPE_INT_RGB); // For visualisation.
 		} else throw new IllegalArgumentException("Nx, Ny > 0.");
 	}
 	
+	private Lattice newLattice(){
+		if(this.sites <= Integer.MAX_VALUE - 8) return new ByteLattice(this.Nx, this.Ny);
+		return new OffHeapLattice(this.Nx, this.Ny);
+	}
+	
+	public void setLattice(Lattice lattice){
+		/*
+		 * Moves the current state into 'lattice', an Nx x Ny lattice
+		 * e.g. from OffHeapLattice.map() to keep a lattice larger than
+		 * memory in a file, and carries on there. The second buffer of
+		 * the synchronous update is not moved.
+		 */
+		if(lattice.getNx() != this.Nx || lattice.getNy() != this.Ny)
+			throw new IllegalArgumentException("Lattice of " + Nx + " x " + Ny + " sites.");
+		this.state.copyTo(lattice);
+		this.state = lattice;
+		this.kineticStale = true;
+	}
+	
 	private void randomState(){
 	    /*
 	     * This initialises the lattice with equal probability of 
@@ -43,22 +98,22 @@ public class Sirs {
 		this.sir[0] = 0.;
 		this.sir[1] = 0.;
 		this.sir[2] = 0.;
-		for(int i=0; i<Nx; i++)
-			for(int j=0; j<Ny; j++){
-				rand = Math.random();
-				if(rand < 1./3.){
-					this.state[i][j] = 0; // 0 means S: red
-					this.sir[0] += 1;
-				}
-				else if(rand < 2./3.){
-					this.state[i][j] = 1; // 1 means I: green
-					this.sir[1] += 1;
-				}
-				else{
-					this.state[i][j] = 2; // 2 means R: blue
-					this.sir[2] += 1;
-				}
+		this.kineticStale = true;
+		for(long idx=0; idx<this.sites; idx++){
+			rand = this.rng.nextDouble();
+			if(rand < 1./3.){
+				this.state.set(idx, (byte)0); // 0 means S: red
+				this.sir[0] += 1;
+			}
+			else if(rand < 2./3.){
+				this.state.set(idx, (byte)1); // 1 means I: green
+				this.sir[1] += 1;
 			}
+			else{
+				this.state.set(idx, (byte)2); // 2 means R: blue
+				this.sir[2] += 1;
+			}
+		}
 	}
 	
 	private void randomState(double fracImmune){
@@ -75,26 +130,75 @@ public class Sirs {
 		this.sir[0] = 0.;
 		this.sir[1] = 0.;
 		this.sir[2] = 0.;
-		for(int i=0; i<Nx; i++)
-			for(int j=0; j<Ny; j++){
-				rand = Math.random();
-				if(rand < fracImmune){
-					this.state[i][j] = -1; // -1 means R (immune): blue
-					this.sir[2] += 1;
-				}
-				else if(rand < fracImmune + (1-fracImmune)/3.){
-					this.state[i][j] = 0; // 0 means S: red
-					this.sir[0] += 1;
-				}
-				else if(rand < fracImmune + 2.*(1-fracImmune)/3.){
-					this.state[i][j] = 1; // 1 means I: green
-					this.sir[1] += 1;
-				}
-				else{
-					this.state[i][j] = 2; // 2 means R: blue
-					this.sir[2] += 1;
-				}
+		this.kineticStale = true;
+		for(long idx=0; idx<this.sites; idx++){
+			rand = this.rng.nextDouble();
+			if(rand < fracImmune){
+				this.state.set(idx, (byte)-1); // -1 means R (immune): blue
+				this.sir[2] += 1;
+			}
+			else if(rand < fracImmune + (1-fracImmune)/3.){
+				this.state.set(idx, (byte)0); // 0 means S: red
+				this.sir[0] += 1;
 			}
+			else if(rand < fracImmune + 2.*(1-fracImmune)/3.){
+				this.state.set(idx, (byte)1); // 1 means I: green
+				this.sir[1] += 1;
+			}
+			else{
+				this.state.set(idx, (byte)2); // 2 means R: blue
+				this.sir[2] += 1;
+			}
+		}
+	}
+	
+	public void setRng(Rng rng){
+		/*
+		 * Swap the generator used by every update of this instance.
+		 */
+		if(rng != null){
+			this.rng = rng;
+			this.sync = null; // Their blocks draw from streams split off the old generator.
+			this.domain = null;
+			this.kinetic = null;
+			this.kineticStale = true;
+		}
+	}
+	
+	public Rng getRng(){
+		return this.rng;
+	}
+	
+	public void setRandomEngine(RandomEngine engine){
+		/*
+		 * Chooses how the random-sequential dynamics (random==True)
+		 * are carried out.
+		 */
+		if(engine != null) this.engine = engine;
+	}
+	
+	public void setEquilibration(double tolerance, int window){
+		/*
+		 * Equilibration ends once the S/I/R series has settled within
+		 * 'tolerance' over two windows of 'window' sweeps each, see 
+		 * EquilibrationDetector; NStabilise is then only an upper bound.
+		 * tolerance <= 0, the default, always runs the full NStabilise
+		 * updates; e.g. setEquilibration(1e-3, 50) enables it.
+		 */
+		if(tolerance > 0 && window < 2)
+			throw new IllegalArgumentException("window > 1.");
+		this.tolerance = tolerance;
+		this.window = window;
+	}
+	
+	static int warmWindow(int window){
+		/*
+		 * Equilibration window of a warm start: a warm lattice is close
+		 * to the new steady state, but near the transition it can relax
+		 * slowly, and a short drift test would bias the point towards
+		 * the previous one. At most halved, and never below 20 sweeps.
+		 */
+		return Math.min(window, Math.max(window / 2, 20));
 	}
 	
 	private void setProbs(double[] p){
@@ -107,76 +211,176 @@ public class Sirs {
 	    /*
 	     * This creates arrays used to get to Nearest Neighbours easily.
 	     * Boundary Conditions: PERIODIC
+	     * xPlus1[] and xMinus1[] hold the flat index of the first site
+	     * of the neighbouring rows, so that site (i+1, j) is found at
+	     * xPlus1[i] + j and site (i, j+1) at row[i] + yPlus1[j].
 	     */
-		this.xPlus1 = new int[Nx];
-		this.xMinus1 = new int[Nx];
+		this.xPlus1 = new long[Nx];
+		this.xMinus1 = new long[Nx];
 		this.yPlus1 = new int[Ny];
 		this.yMinus1 = new int[Ny];
+		this.row = new long[Nx];
 		for(int i=0; i<Nx; i++){
-			xPlus1[i] = i+1;
-			xMinus1[i] = i-1;
+			row[i] = (long)i*Ny;
+			xPlus1[i] = (long)(i+1)*Ny;
+			xMinus1[i] = (long)(i-1)*Ny;
 		}
 		for(int j=0; j<Ny; j++){
 			yPlus1[j] = j+1;
 			yMinus1[j] = j-1;
 		}
 		xPlus1[Nx-1] = 0;
-		xMinus1[0] = Nx-1;
+		xMinus1[0] = (long)(Nx-1)*Ny;
 		yPlus1[Ny-1] = 0;
 		yMinus1[0] = Ny-1;
 	}
 	
+	public static int[] palette(){
+		/*
+		 * The colours used for the window, e.g. for a FrameSink.
+		 */
+		return PALETTE.clone();
+	}
+	
+	public void setFrameSink(FrameSink sink){
+		/*
+		 * Snapshots are offered to 'sink' every sweep of updateSirs()
+		 * and updateSirsBinary(), null to stop. The caller closes it.
+		 */
+		this.sink = sink;
+	}
+	
+	public void setCheckpoint(String path, double seconds){
+		/*
+		 * getp1_p3Data() and getImmunity() save their progress to 'path'
+		 * after every grid point and every 'seconds' within one, and
+		 * on start resume from it if it exists: finished points are 
+		 * copied to the output, the point in progress continues from 
+		 * its saved lattice; in continuation mode the lattice of the
+		 * last finished point is saved too, so a line continues warm.
+		 * The file only resumes a run with the same
+		 * grid, sampling, random engine, equilibration tolerance and
+		 * window, precision and continuation mode; another run refuses
+		 * it. With these settings and the default SERIAL random engine
+		 * a resumed run is identical to an uninterrupted one; the other
+		 * engines continue with streams split off the saved generator.
+		 * The file is removed once the sweep completes. null disables.
+		 */
+		if(path != null && seconds <= 0) throw new IllegalArgumentException("seconds > 0.");
+		this.checkpointPath = path;
+		this.checkpointInterval = (long)(seconds * 1e9);
+	}
+	
+	public void setPrecision(double precision){
+		/*
+		 * Averaging stops once the standard error of <I>/N, from a 
+		 * blocking analysis of the correlated samples, is below 
+		 * 'precision' and the analysis has converged; NAvg is then
+		 * only an upper bound. precision <= 0 always takes NAvg samples.
+		 */
+		this.precision = precision;
+	}
+	
+	public void setEnsemble(boolean ensemble){
+		/*
+		 * getMCData() with random==False runs its replicas in groups of
+		 * 64 sharing one lattice traversal (multi-spin coding, see
+		 * SirsEnsemble), so 64 replicas cost about as much as one. The
+		 * replicas are as independent as before, but not the same ones:
+		 * results agree within the errors, not bit for bit. Nothing is
+		 * displayed in this mode.
+		 */
+		this.ensemble = ensemble;
+	}
+	
+	public void setMonitor(SweepMonitor monitor){
+		/*
+		 * Reports grid point timings and live populations to 'monitor',
+		 * null to stop. Grid points also emit a GridPointEvent to a 
+		 * flight recording, with or without a monitor.
+		 */
+		this.monitor = monitor;
+	}
+	
+	double population(int k){
+		/*
+		 * Current fraction of S (0), I (1) or R (2) sites, readable from
+		 * any thread.
+		 */
+		return this.sir[k] / this.sites;
+	}
+	
+	public void setContinuation(boolean continuation){
+		/*
+		 * Continuation mode for getp1_p3Data(), getImmunity() and 
+		 * getData(): each grid point starts from the equilibrated 
+		 * lattice of the previous point along the inner axis (p3, 
+		 * resp. p1) instead of a fresh random one, so with 
+		 * setEquilibration() equilibration is short wherever the steady
+		 * state changes smoothly. Each line 
+		 * starts cold, and so does any point after one that ended in 
+		 * the absorbing state I=0.
+		 * getp1_p3Data() and getImmunity() then also sweep every line 
+		 * back down, warm from its last point, and write that backward
+		 * pass to outFile.backward in the same layout; comparing both
+		 * files shows the hysteresis. A checkpoint keeps the lattice
+		 * between points too, so a resumed sweep continues its current
+		 * line warm as the uninterrupted run would.
+		 */
+		this.continuation = continuation;
+	}
+	
 	public void init() {
 		/*
 		 * This generates the window with the initial configuration
-		 * of sirs.
+		 * of sirs. Drawing happens on the Renderer's own thread.
+		 * Without a display (headless JVM) there is no window and 
+		 * visual runs just skip the drawing.
 		 */
-		this.f.setIgnoreRepaint(true);
-		this.f.setTitle("Randomised SIRS. p1:" + this.p[0] + 
-				" p2:" + this.p[1] + " p3:" + this.p[2]);
-		this.f.setVisible(true);
-		this.f.setSize(100*this.Nx, 100*this.Ny + this.f.getInsets().top);
-		this.f.addWindowListener(new WindowAdapter() 
-		{public void windowClosing(WindowEvent we) {System.exit(0);}});
-		
-		
-		for (int i = 0; i < this.bi.getWidth(); i++) 
-			for (int j = 0; j < this.bi.getHeight(); j++) 
-				this.bi.setRGB(i, j, this.state[i][j] == 0 ? Color.RED.getRGB()
-						: (this.state[i][j] == 1 ? Color.GREEN.getRGB() 
-								: Color.BLUE.getRGB()));
-		this.f.getGraphics().drawImage(this.bi, 0, this.f.getInsets().top, 
-				this.f.getWidth(), this.f.getHeight()-f.getInsets().top, null);
+		if(GraphicsEnvironment.isHeadless()) return;
+		String title = "Randomised SIRS. p1:" + this.p[0] + 
+				" p2:" + this.p[1] + " p3:" + this.p[2];
+		if(this.view == null)
+			this.view = new Renderer(title, this.Nx, this.Ny, PALETTE, 100*this.Nx, 100*this.Ny, 30);
+		else this.view.getFrame().setTitle(title);
+		this.update();
 	}
 	
 	private void update() {
 		/*
-		 * Replot the sirs arrangement
+		 * Replot the sirs arrangement: hands a snapshot to the renderer
+		 * if it wants a new frame, otherwise returns straight away.
 		 */
-		for(int i=0; i<this.bi.getWidth(); i++)
-			for(int j=0; j<this.bi.getHeight(); j++)
-				this.bi.setRGB(i, j, this.state[i][j] == 0 ? Color.RED.getRGB()
-						: (this.state[i][j] == 1 ? Color.GREEN.getRGB() 
-								: Color.BLUE.getRGB()));
-		this.f.getGraphics().drawImage(this.bi, 0, this.f.getInsets().top, 
-				this.f.getWidth(), this.f.getHeight()-f.getInsets().top, null);
+		if(this.view == null) return;
+		byte[] frame = this.view.acquire();
+		if(frame == null) return;
+		this.snapshot(frame);
+		this.view.publish(frame);
 	}
 	
-	private int[] getRandSite(){
+	private void show(boolean visual){
 		/*
-		 * returns an int[] that determines a random site
+		 * Per-sweep hook of the trajectory runs: window and frame sink.
 		 */
-		return new int[] {(int)(this.Nx * Math.random()), 
-				(int)(this.Ny * Math.random())};
+		if(visual) this.update();
+		if(this.sink == null) return;
+		byte[] frame = this.sink.acquire();
+		if(frame == null) return;
+		this.snapshot(frame);
+		this.sink.publish(frame);
 	}
-
-	private boolean infectedNN(int[] randSite){
+	
+	private void snapshot(byte[] frame){
+		this.state.get(0, frame, 0, frame.length);
+	}
+	
+	private boolean infectedNN(int i, int j){
 		/*
-		 * Check infected Nearest Neighbours
+		 * Check infected Nearest Neighbours of site (i, j)
 		 */
-		int i = randSite[0], j = randSite[1];
-		return this.state[this.xPlus1[i]][j] == 1  || this.state[this.xMinus1[i]][j] == 1 || 
-				this.state[i][this.yPlus1[j]] == 1 || this.state[i][this.yMinus1[j]] == 1;
+		return this.state.get(this.xPlus1[i] + j) == 1  || this.state.get(this.xMinus1[i] + j) == 1 || 
+				this.state.get(this.row[i] + this.yPlus1[j]) == 1 || 
+				this.state.get(this.row[i] + this.yMinus1[j]) == 1;
 	}
 	
 	/*private double[] averageSIR(){
@@ -185,7 +389,7 @@ public class Sirs {
 		int siteState = 0;
 		for(int i=0; i<Nx; i++)
 			for(int j=0; j<Ny; j++){
-				siteState = this.state[i][j];
+				siteState = this.state.get(row[i] + j);
 				if(siteState == 0) avgSIR[0] += 1. / numSites;
 				else if(siteState == 1) avgSIR[1] += 1. / numSites;
 			}
@@ -198,22 +402,35 @@ public class Sirs {
 	     * Access one state and use probabilities given to change
 	     * or keep equal. It modifies the sir[] array if there is
 	     * a change in the state.
+	     * One 64 bit draw picks the site: the upper 32 bits give i 
+	     * and the lower 32 bits give j (multiply-shift reduction).
 	     */
-		double rand = Math.random();
-		int[] randSite = this.getRandSite();
-		int siteState = this.state[randSite[0]][randSite[1]];
-		if(siteState == 1 && rand <= this.p[1]){
-			this.state[randSite[0]][randSite[1]] = 2;
+		this.updateRandomSirs(this.rng.nextLong(), this.rng.nextLong() >>> 11, 
+				Rng.threshold(this.p[0]), Rng.threshold(this.p[1]), Rng.threshold(this.p[2]));
+	}
+	
+	private void updateRandomSirs(long bits, long rand, long t1, long t2, long t3){
+		/*
+		 * One step of updateRandomSirs() with the site draw 'bits', 
+		 * the 53 bit acceptance draw 'rand' and the thresholds 
+		 * Rng.threshold(p1, p2, p3) given.
+		 */
+		int i = (int)(((bits >>> 32) * this.Nx) >>> 32);
+		int j = (int)(((bits & 0xffffffffL) * this.Ny) >>> 32);
+		long idx = this.row[i] + j;
+		int siteState = this.state.get(idx);
+		if(siteState == 1 && rand < t2){
+			this.state.set(idx, (byte)2);
 			this.sir[1] -= 1;
 			this.sir[2] += 1;
 		}
-		else if(siteState == 2 && rand <= this.p[2]){
-			this.state[randSite[0]][randSite[1]] = 0;
+		else if(siteState == 2 && rand < t3){
+			this.state.set(idx, (byte)0);
 			this.sir[2] -= 1;
 			this.sir[0] += 1;
 		}
-		else if(siteState == 0 && rand <= this.p[0] && this.infectedNN(randSite)){
-			this.state[randSite[0]][randSite[1]] = 1;
+		else if(siteState == 0 && rand < t1 && this.infectedNN(i, j)){
+			this.state.set(idx, (byte)1);
 			this.sir[0] -= 1;
 			this.sir[1] += 1;
 		}
@@ -221,46 +438,98 @@ public class Sirs {
 	
 	private void updateParallelSirs(){
 	    /*
-	     * Loop through all the lattice changing states depending on 
-	     * the given probabilities.
+	     * Synchronous update: every site changes state depending on
+	     * the given probabilities and on its Nearest Neighbours at the
+	     * previous time step. The new lattice is written into a second
+	     * buffer, which then becomes the current state. Strips of rows
+	     * are processed concurrently, see SyncUpdater.
 	     */
-		Sirs aux = this;
-		int siteState;
-		double rand;
-		for(int i=0; i<Nx; i++)
-			for(int j=0; j<Ny; j++){
-				rand = Math.random();
-				siteState = aux.state[i][j];
-				if(siteState == 1 && rand <= aux.p[1]){
-					this.state[i][j] = 2;
-					this.sir[1] -= 1;
-					this.sir[2] += 1;
-				}
-				else if(siteState == 2 && rand <= aux.p[2]){
-					this.state[i][j] = 0;
-					this.sir[2] -= 1;
-					this.sir[0] += 1;
-				}
-				else if(siteState == 0 && rand <= aux.p[0] && aux.infectedNN(new int[] {i, j})){
-					this.state[i][j] = 1;
-					this.sir[0] -= 1;
-					this.sir[1] += 1;
-				}
-				if(sir[1]==0) break;
-			}
+		if(this.sync == null){
+			this.sync = new SyncUpdater(this.Nx, this.Ny, this.rng);
+			this.next = this.newLattice();
+		}
+		long[] delta = this.sync.sweep(this.state, this.next, this.p);
+		Lattice aux = this.state;
+		this.state = this.next;
+		this.next = aux;
+		this.sir[0] += delta[0];
+		this.sir[1] += delta[1];
+		this.sir[2] += delta[2];
+		this.kineticStale = true;
 	}
 	
-	private void updateN(int N, boolean random){
+	private long updateN(long N, boolean random){
 	    /*
 	     * Updates N states with the specified method.
+	     * Returns the updates performed: fewer than N if I=0 was reached.
 	     */
-		for(int i=0; i<N; i++){
-			if(random) this.updateRandomSirs();
-			else this.updateParallelSirs();
+		if(random && this.engine != RandomEngine.SERIAL)
+			return this.updateRandomN(N, true);
+		this.kineticStale = true;
+		if(random){ // As below: at least one update, then stop once I=0.
+			if(N <= 0) return 0;
+			this.updateRandomSirs();
+			return sir[1]==0 ? 1 : 1 + this.updateRandomBlock(N-1, true);
+		}
+		for(long i=0; i<N; i++){
+			this.updateParallelSirs();
 			if(sir[1]==0){
-				break;
+				return i+1;
+			}
+		}
+		return N;
+	}
+	
+	private long updateRandomBlock(long N, boolean stopAtAbsorbing){
+	    /*
+	     * N updateRandomSirs() steps, with the site and acceptance draws
+	     * generated Rng.BLOCK at a time and the probabilities turned into
+	     * integer thresholds once. A block holds only the draws still 
+	     * needed, so the steps see the same random numbers as one call
+	     * at a time; only a stop at I=0 leaves some of them unused.
+	     * If stopAtAbsorbing==True, stops once there are no infected sites.
+	     * Returns the updates performed.
+	     */
+		long t1 = Rng.threshold(this.p[0]), t2 = Rng.threshold(this.p[1]), t3 = Rng.threshold(this.p[2]);
+		long[] draws = this.draws;
+		for(long n=0; n<N; ){
+			if(stopAtAbsorbing && sir[1]==0) return n;
+			int m = (int)Math.min(draws.length/2, N - n);
+			this.rng.nextLongs(draws, 2*m);
+			for(int k=0; k<m; k++){
+				if(stopAtAbsorbing && sir[1]==0) return n + k;
+				this.updateRandomSirs(draws[2*k], draws[2*k+1] >>> 11, t1, t2, t3);
 			}
+			n += m;
 		}
+		return N;
+	}
+	
+	private long updateRandomN(long N, boolean stopAtAbsorbing){
+	    /*
+	     * Performs N random-sequential updates with the chosen engine.
+	     * If stopAtAbsorbing==True, stops once there are no infected sites.
+	     * Returns the updates performed.
+	     */
+		long n = 0;
+		if(this.engine == RandomEngine.KINETIC){
+			if(this.kinetic == null) this.kinetic = new KineticUpdater(this.Nx, this.Ny, this.rng);
+			if(this.kineticStale) this.kinetic.rebuild(this.state);
+			this.kineticStale = false;
+			return this.kinetic.advance(N, this.p, this.sir, stopAtAbsorbing);
+		}
+		this.kineticStale = true;
+		if(this.engine == RandomEngine.DOMAIN){
+			if(this.domain == null) this.domain = new DomainUpdater(this.Nx, this.Ny, this.rng);
+			for(; n + this.sites <= N; n += this.sites){
+				if(stopAtAbsorbing && sir[1]==0) return n;
+				long[] delta = this.domain.sweep(this.state, this.p);
+				this.sir[0] += delta[0];
+				this.sir[1] += delta[1];
+				this.sir[2] += delta[2];
+			}
+		}
+		return n + this.updateRandomBlock(N - n, stopAtAbsorbing);
 	}
 	
 	public void updateSirs(String outFile, int dataPoints, boolean random, boolean visual) 
@@ -277,33 +546,262 @@ public class Sirs {
 		PrintWriter writer = new PrintWriter(outFile, "UTF-8");
 		if(visual) this.init();
 		if(random){
-			for(int n=0; n<(dataPoints*Nx*Ny); n++){
-				this.updateRandomSirs();
-				if(n%(Nx*Ny)==0){
-					// divide the SIR array by number of spins to get the fraction of each state. 
-					if(visual) this.update();
-					writer.println(n + " " + this.sir[0]/(Nx*Ny) + " " + 
-					this.sir[1]/(Nx*Ny) + " " + this.sir[2]/(Nx*Ny));
-				}
+			for(long n=0; n<dataPoints*this.sites; n+=this.sites){
+				// divide the SIR array by number of spins to get the fraction of each state. 
+				this.show(visual);
+				writer.println(n + " " + this.sir[0]/this.sites + " " + 
+				this.sir[1]/this.sites + " " + this.sir[2]/this.sites);
+				this.updateRandomN(this.sites, false);
 			}
 		}
 		else{
 			for(int n=0; n<dataPoints; n++){
 				this.updateParallelSirs();
-<<<<<<< HEAD
-				if(visual) this.update();
+				this.show(visual);
 				// divide the SIR array by number of spins to get the fraction of each state.
-=======
-				if(visual)
-					this.update();
->>>>>>> ec7cc18057e2d7221363a3b6d9d78faff0d84223
-				writer.println(n + " " + this.sir[0]/(Nx*Ny) + " " + 
-						this.sir[1]/(Nx*Ny) + " " + this.sir[2]/(Nx*Ny));
+				writer.println(n + " " + this.sir[0]/this.sites + " " + 
+						this.sir[1]/this.sites + " " + this.sir[2]/this.sites);
 			}
 		}
 		writer.close();
 	}
 	
+	public void updateSirsBinary(String outFile, int dataPoints, boolean random, boolean visual) 
+			throws IOException{
+	    /* 
+ 	     * Same as updateSirs(), but the populations are written in the 
+ 	     * binary format of Trajectory (site counts, 12 bytes per record,
+ 	     * 24 above 2^31 sites).
+ 	     * Export to text with 'java Trajectory outFile out.dat'.
+	     */
+		try(Trajectory.Writer writer = Trajectory.openWriter(outFile, Nx, Ny, this.p, 
+				random ? this.sites : 1)){
+			if(visual) this.init();
+			if(random){
+				for(int n=0; n<dataPoints; n++){
+					this.show(visual);
+					writer.write(this.sir[0], this.sir[1], this.sir[2]);
+					this.updateRandomN(this.sites, false);
+				}
+			}
+			else{
+				for(int n=0; n<dataPoints; n++){
+					this.updateParallelSirs();
+					this.show(visual);
+					writer.write(this.sir[0], this.sir[1], this.sir[2]);
+				}
+			}
+		}
+	}
+	
+	double[] measure(double[] prob, double fracImmune, long NStabilise, int NAvg, long NSkip, 
+			boolean random, boolean visual){
+		/*
+		 * Measures one grid point: a fresh random lattice with the 
+		 * probabilities 'prob' is evolved NStabilise updates, then the
+		 * normalised populations are averaged over NAvg samples taken
+		 * every NSkip updates.
+		 * If fracImmune < 0 the lattice has no immune sites (randomState()).
+		 * Within a checkpointed sweep the point may instead resume from
+		 * the saved lattice, see setCheckpoint().
+		 *
+		 * Returns {<S>, <I>, <R>, <(dS)^2>, <(dI)^2>, <(dR)^2>} per site,
+		 * the number of equilibration updates actually used, the 
+		 * standard errors of <S>, <I>, <R> (blocking analysis, see 
+		 * BlockingAnalysis) and the number of samples taken.
+		 */
+		GridPointEvent event = new GridPointEvent();
+		event.begin();
+		String label = (fracImmune >= 0 ? "fracImmune=" + fracImmune + " " : "") + 
+				"p1=" + prob[0] + " p2=" + prob[1] + " p3=" + prob[2];
+		if(this.monitor != null) this.monitor.pointStarted(this, label);
+		long t0 = System.nanoTime();
+		this.setProbs(prob);
+		Checkpoint.Point point = this.resumePoint();
+		if(point == null){
+			boolean cold = !this.continuation || !this.warm || sir[1] == 0;
+			if(!cold) this.kineticStale = true; // Same lattice, new probabilities.
+			else if(fracImmune < 0) this.randomState();
+			else this.randomState(fracImmune);
+			int w = cold ? this.window : warmWindow(this.window);
+			point = new Checkpoint.Point(this.tolerance > 0 ? 
+					new EquilibrationDetector(this.tolerance, w) : null);
+			if(this.run != null) this.run.point = point;
+		}
+		long usedBefore = point.phase == 0 ? point.used : 0;
+		if(point.phase == 0){
+			this.equilibrate(NStabilise, random, point);
+			point.phase = 1;
+		}
+		long t1 = System.nanoTime(), averagingUpdates = 0;
+		if(visual) this.update();
+		BlockingAnalysis[] stats = point.stats;
+		while(point.samples < NAvg){
+			this.checkpoint(false);
+			stats[0].add(sir[0]/this.sites);
+			stats[1].add(sir[1]/this.sites);
+			stats[2].add(sir[2]/this.sites);
+			point.samples += 1;
+			if(this.precision > 0 && stats[1].isConverged() && stats[1].getStdError() < this.precision) 
+				break;
+			averagingUpdates += this.updateN(NSkip, random);
+		}
+		if(this.run != null) this.run.point = null;
+		this.warm = true;
+		long t2 = System.nanoTime();
+		
+		long equilibrationUpdates = point.used - usedBefore;
+		long siteUpdates = (equilibrationUpdates + averagingUpdates) * (random ? 1 : this.sites);
+		if(this.monitor != null) this.monitor.pointDone(label, t1 - t0, t2 - t1, siteUpdates);
+		if(event.shouldCommit()){
+			event.end();
+			event.fracImmune = fracImmune;
+			event.p1 = prob[0];
+			event.p2 = prob[1];
+			event.p3 = prob[2];
+			event.sites = this.sites;
+			event.equilibrationUpdates = equilibrationUpdates;
+			event.averagingUpdates = averagingUpdates;
+			event.equilibrationTime = t1 - t0;
+			event.averagingTime = t2 - t1;
+			event.siteUpdatesPerSecond = siteUpdates / ((t2 - t0) * 1e-9);
+			event.infected = stats[1].getMean();
+			event.infectedError = stats[1].getStdError();
+			event.autocorrelationTime = stats[1].getAutocorrelationTime();
+			event.samples = point.samples;
+			event.latticeBytes = this.state.size();
+			event.commit();
+		}
+		return new double[] {stats[0].getMean(), stats[1].getMean(), stats[2].getMean(),
+				stats[0].getVariance(), stats[1].getVariance(), stats[2].getVariance(), point.used,
+				stats[0].getStdError(), stats[1].getStdError(), stats[2].getStdError(), point.samples};
+	}
+	
+	private void equilibrate(long NStabilise, boolean random, Checkpoint.Point point){
+		/*
+		 * Evolves the lattice until the populations have settled, until
+		 * the absorbing state I=0 is reached, or for NStabilise updates
+		 * at most. The updates used are counted in point.used.
+		 */
+		long sweep = random ? this.sites : 1;
+		while(point.used < NStabilise && sir[1] != 0){
+			this.checkpoint(false);
+			long n = Math.min(sweep, NStabilise - point.used);
+			this.updateN(n, random);
+			point.used += n;
+			if(point.detector != null && 
+					point.detector.add(sir[0]/this.sites, sir[1]/this.sites, sir[2]/this.sites)) break;
+		}
+	}
+	
+	private Checkpoint openCheckpoint(String description){
+		/*
+		 * Starts a checkpointed sweep, resuming from the file if it 
+		 * holds the same sweep. Returns null if checkpoints are off.
+		 */
+		if(this.checkpointPath == null) return null;
+		String key = description + " Nx=" + Nx + " Ny=" + Ny + " engine=" + this.engine + 
+				" tolerance=" + this.tolerance + " window=" + this.window + " precision=" + this.precision;
+		try{
+			Checkpoint ck = Checkpoint.read(this.checkpointPath, this.tolerance, this.window);
+			if(ck == null) ck = new Checkpoint(key, Nx, Ny);
+			else if(!ck.run.equals(key))
+				throw new IllegalStateException(this.checkpointPath + " belongs to another sweep: " + ck.run);
+			else if(ck.rng != null){
+				Xoshiro256 restored = new Xoshiro256(0);
+				restored.setState(ck.rng);
+				this.setRng(restored);
+			}
+			this.run = ck;
+			this.lastCheckpoint = System.nanoTime();
+			return ck;
+		} catch(IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	private void closeCheckpoint(){
+		try{
+			java.nio.file.Files.deleteIfExists(java.nio.file.Paths.get(this.checkpointPath));
+		} catch(IOException e){
+			throw new UncheckedIOException(e);
+		}
+		this.run = null;
+	}
+	
+	private Checkpoint.Point resumePoint(){
+		/*
+		 * Restores the lattice of a resumed sweep, once: of the point in
+		 * progress, which is returned, or of the last finished point in
+		 * continuation mode, to start warm from (returns null). Returns
+		 * null if there is none.
+		 */
+		if(this.run == null || this.run.lattice == null) return null;
+		this.run.lattice.copyTo(this.state);
+		this.run.lattice = null;
+		this.sir[0] = 0.;
+		this.sir[1] = 0.;
+		this.sir[2] = 0.;
+		byte[] buffer = new byte[1 << 16];
+		for(long from=0; from<this.sites; from+=buffer.length){
+			int n = (int)Math.min(buffer.length, this.sites - from);
+			this.state.get(from, buffer, 0, n);
+			for(int k=0; k<n; k++)
+				if(buffer[k] >= 0) this.sir[buffer[k]] += 1;
+		}
+		this.kineticStale = true;
+		this.warm = true;
+		return this.run.point;
+	}
+	
+	private void checkpoint(boolean force){
+		/*
+		 * Saves the sweep in progress if the interval has elapsed.
+		 */
+		if(this.run == null || (!force && System.nanoTime() - this.lastCheckpoint < this.checkpointInterval)) 
+			return;
+		this.run.rng = this.rng instanceof Xoshiro256 ? ((Xoshiro256)this.rng).getState() : null;
+		this.run.lattice = this.run.point != null || (this.continuation && this.warm) ? 
+				this.state : null; // Written straight from the live lattice.
+		try{
+			this.run.write(this.checkpointPath);
+		} catch(IOException e){
+			throw new UncheckedIOException(e);
+		}
+		this.run.lattice = null;
+		this.lastCheckpoint = System.nanoTime();
+	}
+	
+	private int[] lineOrder(int n){
+		/*
+		 * Visiting order of the n points of one line: up, and back down
+		 * again in continuation mode.
+		 */
+		int[] order = new int[this.continuation ? 2*n : n];
+		for(int k=0; k<n; k++){
+			order[k] = k;
+			if(this.continuation) order[n + k] = n-1 - k;
+		}
+		return order;
+	}
+	
+	private static void printRow(PrintWriter writer, double[] row, int... integers){
+		/*
+		 * One output line; the columns listed in 'integers' (0-based:
+		 * update and sample counts) are printed as integers.
+		 */
+		StringBuilder line = new StringBuilder();
+		for(int c=0, next=0; c<row.length; c++){
+			if(c > 0) line.append(' ');
+			if(next < integers.length && integers[next] == c){
+				line.append((long)row[c]);
+				next += 1;
+			}
+			else line.append(row[c]);
+		}
+		writer.println(line);
+	}
+	
 	public void getp1_p3Data(String outFile, boolean random, boolean visual) 
 			throws FileNotFoundException, UnsupportedEncodingException{
 		/*
@@ -315,50 +813,72 @@ public class Sirs {
 		 *
 		 * Plot this in gnuplot with "p 'outfile' u 1:3:5 w image" to get
 		 * the fraction of Infected sites.
+		 * Column 10 holds the equilibration updates used at each point,
+		 * 11-13 the standard errors of S/N, I/N, R/N (blocking analysis)
+		 * and 14 the number of samples taken, see setPrecision().
+		 * Resumable, see setCheckpoint(). Warm starts along p3, see 
+		 * setContinuation().
 		 *
 		 * If random==True, use updateRandomSirs().
 	     	 * If visual==True, display visualisation.
 		 */
-		double[] prob = {0., 0.5, 0.}, avgAux = {0., 0., 0.};
-		int n = 20, NStabilise = 10000000, NAvg = 1000;
+		double[] prob = {0., 0.5, 0.}, avgStates;
+		int n = 20, NStabilise = 10000000, NAvg = 1000, NSkip = 10000;
+		int[] order = this.lineOrder(n);
+		Checkpoint ck = this.openCheckpoint("getp1_p3Data n=" + n + " NStabilise=" + NStabilise + 
+				" NAvg=" + NAvg + " NSkip=" + NSkip + " random=" + random + " continuation=" + this.continuation);
 		PrintWriter writer = new PrintWriter(outFile, "UTF-8");
+		PrintWriter backWriter = this.continuation ? new PrintWriter(outFile + ".backward", "UTF-8") : null;
+		double[][] line = new double[order.length][];
+		if(this.monitor != null) this.monitor.startSweep("getp1_p3Data " + outFile, n*order.length);
 		if(visual) this.init();
 		for(int i1=0; i1<n; i1++){ // p1 for loop
 			prob[0] = i1 / (double)(n-1);
-			for(int i3=0; i3<n; i3++){ // p3 for loop
+			this.warm = false;
+			for(int k=0; k<order.length; k++){ // p3 for loop, up (and down)
+				int i3 = order[k], idx = i1*order.length + k;
+				if(ck != null && idx < ck.rows.size()){ // Finished before the restart.
+					line[k] = ck.rows.get(idx);
+					if(this.monitor != null) this.monitor.pointSkipped();
+					continue;
+				}
 				System.out.println(i1 + " " + i3);
 				prob[2] = i3 / (double)(n-1);
-				this.setProbs(prob);
-				this.randomState();
-				this.updateN(NStabilise, random);
-				if(visual) this.update();
-				double[] avgStates = {0., 0., 0.}, avgStates2 = {0., 0., 0.};
-				for(int k=0; k<NAvg; k++){
-					avgAux[0] = sir[0]/(Nx*Ny);
-					avgAux[1] = sir[1]/(Nx*Ny);
-					avgAux[2] = sir[2]/(Nx*Ny);
-					avgStates[0] += (avgAux[0]/(double)NAvg);
-					avgStates[1] += (avgAux[1]/(double)NAvg);
-					avgStates[2] += (avgAux[2]/(double)NAvg);
-					avgStates2[0] += (avgAux[0]*avgAux[0]/(double)NAvg);
-					avgStates2[1] += (avgAux[1]*avgAux[1]/(double)NAvg);
-					avgStates2[2] += (avgAux[2]*avgAux[2]/(double)NAvg);
-					this.updateN(10000, random);
+				avgStates = this.measure(prob, -1., NStabilise, NAvg, NSkip, random, visual);
+				line[k] = new double[] {prob[0], 					// 1: p1
+						prob[1], 						// 2: p2
+						prob[2], 						// 3: p3
+						avgStates[0], 						// 4: S/N
+						avgStates[1], 						// 5: I/N
+						avgStates[2], 						// 6: R/N
+						avgStates[3], 						// 7: <(dS)^2>
+						avgStates[4], 						// 8: <(dI)^2>
+						avgStates[5], 						// 9: <(dR)^2>
+						avgStates[6], 						// 10: equilibration updates
+						avgStates[7], 						// 11: error of S/N
+						avgStates[8], 						// 12: error of I/N
+						avgStates[9], 						// 13: error of R/N
+						avgStates[10]};						// 14: samples
+				if(k == order.length-1) this.warm = false; // The next line starts cold, also after a restart.
+				if(ck != null){
+					ck.rows.add(line[k]);
+					this.checkpoint(true);
 				}
-				writer.println(prob[0] + " " + 						// 1: p1
-						prob[1] + " " + 					// 2: p2
-						prob[2] + " " + 					// 3: p3
-						avgStates[0] + " " + 					// 4: S/N
-						avgStates[1] + " " + 					// 5: I/N
-						avgStates[2] + " " + 					// 6: R/N
-						(avgStates2[0] - avgStates[0]*avgStates[0]) + " " + 	// 7: <(dS)^2>
-						(avgStates2[1] - avgStates[1]*avgStates[1]) + " " + 	// 8: <(dI)^2>
-						(avgStates2[2] - avgStates[2]*avgStates[2]));		// 9: <(dR)^2>
+			}
+			for(int i3=0; i3<n; i3++){
+				printRow(writer, line[i3], 9, 13);
+				if(backWriter != null) printRow(backWriter, line[2*n-1 - i3], 9, 13);
 			}
 			writer.println(); // For gnuplot 'splot'
+			writer.flush();
+			if(backWriter != null){
+				backWriter.println();
+				backWriter.flush();
+			}
 		}
 		writer.close();
-		
+		if(backWriter != null) backWriter.close();
+		if(ck != null) this.closeCheckpoint();
 	}
 	
 	public void getImmunity(String outFile, boolean random, boolean visual) throws FileNotFoundException, UnsupportedEncodingException{
@@ -371,81 +891,85 @@ public class Sirs {
 		 * Avoid throwing exceptions by using adecuate paths to the file.
 		 *
 		 * Plot this in gnuplot with "p 'outFile' u 1:2:6 w image" 
+		 * Column 11 holds the equilibration updates used at each point,
+		 * 12-14 the standard errors of S/N, I/N, R/N and 15 the number
+		 * of samples taken.
+		 * Resumable, see setCheckpoint(). Warm starts along p1, see
+		 * setContinuation().
 		 *
 		 * if random==True, use updateRandomSirs().
 		 * if visual==True, display visualisation.
 		 */
-		double[] prob = {0., 0.5, 0.5}, avgAux = {0., 0., 0.};
+		double[] prob = {0., 0.5, 0.5}, avgStates;
 		double fracImmune = 0.;
-		int n = 30, NStabilise = 10000000, NAvg = 100000;
+		int n = 30, NStabilise = 10000000, NAvg = 100000, NSkip = 100;
+		int[] order = this.lineOrder(n);
+		Checkpoint ck = this.openCheckpoint("getImmunity n=" + n + " NStabilise=" + NStabilise + 
+				" NAvg=" + NAvg + " NSkip=" + NSkip + " random=" + random + " continuation=" + this.continuation);
 		PrintWriter writer = new PrintWriter(outFile, "UTF-8");
+		PrintWriter backWriter = this.continuation ? new PrintWriter(outFile + ".backward", "UTF-8") : null;
+		double[][] line = new double[order.length][];
+		if(this.monitor != null) this.monitor.startSweep("getImmunity " + outFile, n*order.length);
 		if(visual) this.init();
 		for(int i0=0; i0<n; i0++){
 			fracImmune = i0 / (double)(n-1);
-			for(int i1=0; i1<n; i1++){
+			this.warm = false;
+			for(int k=0; k<order.length; k++){
+				int i1 = order[k], idx = i0*order.length + k;
+				if(ck != null && idx < ck.rows.size()){ // Finished before the restart.
+					line[k] = ck.rows.get(idx);
+					if(this.monitor != null) this.monitor.pointSkipped();
+					continue;
+				}
 				System.out.println(i0 + " " + i1);
 				prob[0] = i1 / (double)(n-1);
-				this.setProbs(prob);
-				this.randomState(fracImmune);
-				this.updateN(NStabilise, random);
-				if(visual) this.update();
-				double[] avgStates = {0., 0., 0.}, avgStates2 = {0., 0., 0.};
-				for(int k=0; k<NAvg; k++){
-					avgAux[0] = sir[0]/(Nx*Ny);
-					avgAux[1] = sir[1]/(Nx*Ny);
-					avgAux[2] = sir[2]/(Nx*Ny);
-					avgStates[0] += (avgAux[0]/(double)NAvg);
-					avgStates[1] += (avgAux[1]/(double)NAvg);
-					avgStates[2] += (avgAux[2]/(double)NAvg);
-					avgStates2[0] += (avgAux[0]*avgAux[0]/(double)NAvg);
-					avgStates2[1] += (avgAux[1]*avgAux[1]/(double)NAvg);
-					avgStates2[2] += (avgAux[2]*avgAux[2]/(double)NAvg);
-					this.updateN(100, random);
+				avgStates = this.measure(prob, fracImmune, NStabilise, NAvg, NSkip, random, visual);
+				line[k] = new double[] {fracImmune, prob[0], prob[1], prob[2], 
+						avgStates[0], avgStates[1], avgStates[2], 
+						avgStates[3], avgStates[4], avgStates[5], avgStates[6], 
+						avgStates[7], avgStates[8], avgStates[9], avgStates[10]};
+				if(k == order.length-1) this.warm = false; // The next line starts cold, also after a restart.
+				if(ck != null){
+					ck.rows.add(line[k]);
+					this.checkpoint(true);
 				}
-				writer.println(fracImmune + " " + prob[0] + " " + prob[1] + " " + prob[2] + " " + 
-						avgStates[0] + " " + avgStates[1] + " " + avgStates[2] + 
-						" " + (avgStates2[0] - avgStates[0]*avgStates[0]) + 
-						" " + (avgStates2[1] - avgStates[1]*avgStates[1]) + 
-						" " + (avgStates2[2] - avgStates[2]*avgStates[2]));
+			}
+			for(int i1=0; i1<n; i1++){
+				printRow(writer, line[i1], 10, 14);
+				if(backWriter != null) printRow(backWriter, line[2*n-1 - i1], 10, 14);
 			}
 			writer.println();
+			writer.flush();
+			if(backWriter != null){
+				backWriter.println();
+				backWriter.flush();
+			}
 		}
 		writer.close();
+		if(backWriter != null) backWriter.close();
+		if(ck != null) this.closeCheckpoint();
 	}
 	
 	private double[][] getData(int nGridPoints, boolean random, boolean visual){
-		
-		double[] prob = {0., 0.5, 0.}, avgAux = {0., 0., 0.};
+		/*
+		 * Same sweep as getp1_p3Data(), returned as rows of its 10 columns.
+		 * In continuation mode only the upward pass is run.
+		 */
+		double[] prob = {0., 0.5, 0.}, avgStates;
 		int n = nGridPoints, NStabilise = 10000000, NAvg = 100000;
-		double[][] data = new double[nGridPoints*nGridPoints][9];
+		double[][] data = new double[nGridPoints*nGridPoints][10];
 		if(visual) this.init();
 		int i=0;
 		for(int i1=0; i1<n; i1++){
 			prob[0] = i1 / (double)(n-1);
+			this.warm = false;
 			for(int i3=0; i3<n; i3++){
 				prob[2] = i3 / (double)(n-1);
-				this.setProbs(prob);
-				this.randomState();
-				this.updateN(NStabilise, random);
-				if(visual) this.update();
-				double[] avgStates = {0., 0., 0.}, avgStates2 = {0., 0., 0.};
-				for(int k=0; k<NAvg; k++){
-					avgAux[0] = sir[0]/(Nx*Ny);
-					avgAux[1] = sir[1]/(Nx*Ny);
-					avgAux[2] = sir[2]/(Nx*Ny);
-					avgStates[0] += (avgAux[0]/(double)NAvg);
-					avgStates[1] += (avgAux[1]/(double)NAvg);
-					avgStates[2] += (avgAux[2]/(double)NAvg);
-					avgStates2[0] += (avgAux[0]*avgAux[0]/(double)NAvg);
-					avgStates2[1] += (avgAux[1]*avgAux[1]/(double)NAvg);
-					avgStates2[2] += (avgAux[2]*avgAux[2]/(double)NAvg);
-					this.updateN(100, random);
-				}
+				avgStates = this.measure(prob, -1., NStabilise, NAvg, 100, random, visual);
 				data[i][0] = prob[0]; data[i][1] = prob[1]; data[i][2] = prob[2];
 				data[i][3] = avgStates[0]; data[i][4] = avgStates[1]; data[i][5] = avgStates[2];
-				data[i][6] = avgStates2[0] - avgStates[0]*avgStates[0];
-				data[i][7] = avgStates2[1] - avgStates[1]*avgStates[1];
-				data[i][8] = avgStates2[2] - avgStates[2]*avgStates[2];
+				data[i][6] = avgStates[3]; data[i][7] = avgStates[4]; data[i][8] = avgStates[5];
+				data[i][9] = avgStates[6];
 				i += 1;
 			}
 		}
@@ -454,23 +978,105 @@ public class Sirs {
 	}
 
 	public void getMCData(String outFile, int nMC, int nGridPoints, boolean random, boolean visual) throws FileNotFoundException, UnsupportedEncodingException{
-		double[][] data = new double[nGridPoints*nGridPoints][9], allData = new double[nGridPoints*nGridPoints][9];
+		/*
+		 * Averages nMC independent getData() replicas over the p1-p3 grid.
+		 * Replicas run concurrently on the common ForkJoinPool, each on 
+		 * its own lattice with its own random stream, and feed mergeable
+		 * accumulators, so memory does not grow with nMC.
+		 * If visual==True, only the first replica is displayed.
+		 * With setEnsemble(true) and random==False the replicas run 64
+		 * at a time in SirsEnsemble instead.
+		 *
+		 * Columns 1-9 as in getp1_p3Data() averaged over replicas, then
+		 * 10-12: standard error of <S>, <I>, <R> between replicas and
+		 * 13: mean equilibration updates used.
+		 */
+		if(nMC < 1) throw new IllegalArgumentException("nMC > 0.");
+		if(this.monitor != null) this.monitor.startSweep("getMCData " + outFile, nMC*nGridPoints*nGridPoints);
+		Accumulator[][] allData = ForkJoinPool.commonPool().invoke(
+				new ReplicaTask(this.rng.nextLong(), 0, nMC, nMC, nGridPoints, random, visual));
 		PrintWriter writer = new PrintWriter(outFile, "UTF-8");
-		for(int i=0; i<nMC; i++){
-			data = this.getData(nGridPoints, random, visual);
-			System.out.println((i+1)+"/"+nMC);
-			for(int j=0; j<nGridPoints*nGridPoints; j++)
-				for(int k=0; k<9; k++)
-					allData[j][k] += data[j][k] / (double)nMC;
-		}
-		
 		for(int i=0; i<nGridPoints*nGridPoints; i++){
 			if(i%nGridPoints==0) writer.println();
-			writer.println(allData[i][0]+" "+allData[i][1]+" "+allData[i][2]+" "+allData[i][3]+" "+
-					allData[i][4]+" "+allData[i][5]+" "+allData[i][6]+" "+allData[i][7]+" "+allData[i][8]);
+			for(int k=0; k<9; k++)
+				writer.print(allData[i][k].getMean() + " ");
+			writer.println(allData[i][3].getStdError() + " " + allData[i][4].getStdError() + " " + 
+					allData[i][5].getStdError() + " " + allData[i][9].getMean());
 		}
 		writer.close();
 	}
+	
+	private class ReplicaTask extends RecursiveTask<Accumulator[][]> {
+		/*
+		 * Runs replicas [from, to) by halving the range, and merges
+		 * the accumulators of both halves on the way back.
+		 */
+		private static final long serialVersionUID = 1L;
+		private final long seed;
+		private final int from, to, nMC, nGridPoints;
+		private final boolean random, visual;
+		
+		ReplicaTask(long seed, int from, int to, int nMC, int nGridPoints, boolean random, boolean visual){
+			this.seed = seed;
+			this.from = from;
+			this.to = to;
+			this.nMC = nMC;
+			this.nGridPoints = nGridPoints;
+			this.random = random;
+			this.visual = visual;
+		}
+		
+		protected Accumulator[][] compute(){
+			int leaf = ensemble && !this.random ? SirsEnsemble.LANES : 1; // Replicas per task.
+			if(this.to - this.from > leaf){
+				int mid = this.from + (this.to - this.from + leaf - 1) / leaf / 2 * leaf;
+				ReplicaTask right = new ReplicaTask(seed, mid, to, nMC, nGridPoints, random, visual);
+				right.fork();
+				Accumulator[][] acc = new ReplicaTask(seed, from, mid, nMC, nGridPoints, random, visual).compute();
+				Accumulator[][] accRight = right.join();
+				for(int j=0; j<acc.length; j++)
+					for(int k=0; k<10; k++)
+						acc[j][k].merge(accRight[j][k]);
+				return acc;
+			}
+			if(leaf > 1) return this.ensemble();
+			Sirs replica = new Sirs(Nx, Ny, p);
+			replica.setRng(new Xoshiro256(SplitMix64.mix64(this.seed + this.from)));
+			replica.setRandomEngine(engine);
+			replica.setEquilibration(tolerance, window);
+			replica.setContinuation(continuation);
+			replica.setMonitor(monitor);
+			replica.setPrecision(precision);
+			double[][] data = replica.getData(this.nGridPoints, this.random, this.visual && this.from == 0);
+			Accumulator[][] acc = new Accumulator[data.length][10];
+			for(int j=0; j<data.length; j++)
+				for(int k=0; k<10; k++){
+					acc[j][k] = new Accumulator();
+					acc[j][k].add(data[j][k]);
+				}
+			System.out.println("replica " + (this.from+1) + "/" + this.nMC);
+			return acc;
+		}
+		
+		private Accumulator[][] ensemble(){
+			/*
+			 * Replicas [from, to), at most 64, as one SirsEnsemble.
+			 */
+			SirsEnsemble replicas = new SirsEnsemble(Nx, Ny, this.to - this.from,
+					new Xoshiro256(SplitMix64.mix64(this.seed + this.from)));
+			replicas.setEquilibration(tolerance, window);
+			replicas.setContinuation(continuation);
+			replicas.setMonitor(monitor);
+			replicas.setPrecision(precision);
+			double[][][] data = replicas.getData(this.nGridPoints);
+			Accumulator[][] acc = new Accumulator[data[0].length][10];
+			for(int j=0; j<acc.length; j++)
+				for(int k=0; k<10; k++){
+					acc[j][k] = new Accumulator();
+					for(double[][] replica : data) acc[j][k].add(replica[j][k]);
+				}
+			System.out.println("replicas " + (this.from+1) + "-" + this.to + "/" + this.nMC);
+			return acc;
+		}
+	}
 }
-
-
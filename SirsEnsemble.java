@@ -0,0 +1,301 @@
+public final class SirsEnsemble {
+	/*
+	 * Up to 64 independent replicas of the synchronous SIRS dynamics
+	 * (Sirs with random==False) in one traversal, multi-spin coded:
+	 * bit l of a long word belongs to replica l. Each site is stored
+	 * as two bit planes,
+	 *     S: a=0 b=0,   I: a=1 b=0,   R: a=0 b=1,
+	 * so a sweep is a handful of bitwise operations per site for all
+	 * replicas at once.
+	 * The random decision of a lane is exact: the random words are the
+	 * bits of one uniform number per lane, most significant first, and
+	 * a lane's bits are compared with the 53 bit binary expansion of its
+	 * probability (p1, p2 or p3 depending on the lane's state) until they
+	 * differ. That takes about log2(lanes)+2 words per site instead of
+	 * one draw per replica. Equal expansions accept, as rand <= p does.
+	 * S/I/R of every replica are counted with bit-sliced counters.
+	 * A replica that reaches I=0 is frozen, as Sirs.updateN() stops there
+	 * (after the one sweep updateN() always does).
+	 * Boundary Conditions: PERIODIC
+	 */
+
+	public static final int LANES = 64;
+	private static final int BITS = 53; // Precision of the probabilities, as Rng.threshold().
+	private final int Nx, Ny, lanes;
+	private final long active; // Bit l set for the replicas in use.
+	private long[] a, b, nextA, nextB; // Bit planes of the lattice and of the second buffer.
+	private final int[] yPlus1, yMinus1;
+	private final Rng rng;
+	private final long[] draws = new long[Rng.BLOCK];
+	private int drawn = Rng.BLOCK; // Next unused entry of draws.
+	private final long[][] q = new long[3][BITS]; // q[x][k]: bit k (MSB first) of p(x+1), as 0 or -1.
+	private final long[] countI = new long[64], countR = new long[64]; // Bit-sliced counters.
+	private final long[] nI = new long[LANES], nR = new long[LANES]; // Populations of each replica.
+	private long frozen = 0; // Replicas with I=0.
+	private final long[] swept = new long[LANES]; // Sweeps of each replica in the current measure().
+	private double tolerance = 0.; // Off, as Sirs.setEquilibration().
+	private int window = 50;
+	private boolean continuation = false, warm = false; // As Sirs.setContinuation().
+	private double precision = 0.; // As Sirs.setPrecision().
+	private SweepMonitor monitor;
+
+	public SirsEnsemble(int Nx, int Ny, int lanes, Rng rng){
+		if(Nx <= 0 || Ny <= 0 || (long)Nx*Ny > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException("Nx, Ny > 0 and Nx*Ny < 2^31.");
+		if(lanes < 1 || lanes > LANES) throw new IllegalArgumentException("1 <= lanes <= 64.");
+		this.Nx = Nx;
+		this.Ny = Ny;
+		this.lanes = lanes;
+		this.active = lanes == LANES ? -1L : (1L << lanes) - 1;
+		this.a = new long[Nx*Ny];
+		this.b = new long[Nx*Ny];
+		this.nextA = new long[Nx*Ny];
+		this.nextB = new long[Nx*Ny];
+		this.yPlus1 = new int[Ny];
+		this.yMinus1 = new int[Ny];
+		for(int j=0; j<Ny; j++){
+			this.yPlus1[j] = (j+1) % Ny;
+			this.yMinus1[j] = (j-1+Ny) % Ny;
+		}
+		this.rng = rng;
+	}
+
+	public void setEquilibration(double tolerance, int window){
+		if(tolerance > 0 && window < 2)
+			throw new IllegalArgumentException("window > 1.");
+		this.tolerance = tolerance;
+		this.window = window;
+	}
+
+	public void setContinuation(boolean continuation){
+		this.continuation = continuation;
+	}
+
+	public void setPrecision(double precision){
+		this.precision = precision;
+	}
+
+	public void setMonitor(SweepMonitor monitor){
+		this.monitor = monitor;
+	}
+
+	public int getLanes(){
+		return this.lanes;
+	}
+
+	private static void expand(double p, long[] q){
+		/*
+		 * q[k] = -1 if bit k (weight 2^-(k+1)) of p is set. p >= 1 is
+		 * 1 - 2^-53, which with the tie rule accepts every draw.
+		 */
+		long P = p >= 1 ? (1L << BITS) - 1 : (long)(Math.max(p, 0.) * 0x1.0p53);
+		for(int k=0; k<BITS; k++)
+			q[k] = -((P >>> (BITS-1 - k)) & 1);
+	}
+
+	private long next(){
+		if(this.drawn == this.draws.length){
+			this.rng.nextLongs(this.draws, this.draws.length);
+			this.drawn = 0;
+		}
+		return this.draws[this.drawn++];
+	}
+
+	private long accept(long c1, long[] q1, long c2, long[] q2, long c3, long[] q3){
+		/*
+		 * Lanes of c1 (c2, c3) accepting with the probability expanded in
+		 * q1 (q2, q3); the three lane sets are disjoint.
+		 */
+		long undecided = c1 | c2 | c3, accepted = 0;
+		for(int k=0; k<BITS && undecided != 0; k++){
+			long q = (c1 & q1[k]) | (c2 & q2[k]) | (c3 & q3[k]), r = this.next();
+			accepted |= undecided & q & ~r; // Random bit 0, probability bit 1: below.
+			undecided &= ~(q ^ r);
+		}
+		return accepted | undecided;
+	}
+
+	private static void add(long[] counter, long w){
+		/*
+		 * Adds bit l of w to the count of lane l (ripple carry over the
+		 * bit planes of the counter).
+		 */
+		for(int k=0; w != 0; k++){
+			long carry = counter[k] & w;
+			counter[k] ^= w;
+			w = carry;
+		}
+	}
+
+	private void recount(){
+		/*
+		 * Reads the bit-sliced counters into nI[], nR[] and clears them;
+		 * replicas without infected sites are frozen.
+		 */
+		for(int l=0; l<LANES; l++){
+			long i = 0, r = 0;
+			for(int k=0; k<64; k++){
+				i |= ((this.countI[k] >>> l) & 1) << k;
+				r |= ((this.countR[k] >>> l) & 1) << k;
+			}
+			this.nI[l] = i;
+			this.nR[l] = r;
+			if(i == 0) this.frozen |= 1L << l;
+		}
+		java.util.Arrays.fill(this.countI, 0);
+		java.util.Arrays.fill(this.countR, 0);
+	}
+
+	private void randomState(long lanes){
+		/*
+		 * Fresh random lattice for the replicas in 'lanes': S, I and R
+		 * with probability 1/3 each, as Sirs.randomState().
+		 */
+		long[] third = new long[BITS], half = new long[BITS], none = new long[BITS];
+		expand(1./3., third);
+		expand(0.5, half);
+		for(int idx=0; idx<this.a.length; idx++){
+			long s = this.accept(lanes, third, 0, none, 0, none), rest = lanes & ~s;
+			long i = this.accept(rest, half, 0, none, 0, none);
+			this.a[idx] = (this.a[idx] & ~lanes) | i;
+			this.b[idx] = (this.b[idx] & ~lanes) | (rest & ~i);
+		}
+		for(int idx=0; idx<this.a.length; idx++){
+			add(this.countI, this.a[idx]);
+			add(this.countR, this.b[idx]);
+		}
+		this.frozen &= ~lanes;
+		this.recount();
+	}
+
+	private void sweep(long live){
+		/*
+		 * One synchronous update of the replicas in 'live'; the others
+		 * are copied unchanged.
+		 */
+		long[] a = this.a, b = this.b, nextA = this.nextA, nextB = this.nextB;
+		long[] q1 = this.q[0], q2 = this.q[1], q3 = this.q[2];
+		for(long l=live; l!=0; l&=l-1) this.swept[Long.numberOfTrailingZeros(l)] += 1;
+		for(int i=0; i<Nx; i++){
+			int row = i*Ny, up = ((i+1) % Nx)*Ny, down = ((i-1+Nx) % Nx)*Ny;
+			for(int j=0; j<Ny; j++){
+				int idx = row + j;
+				long ai = a[idx], bi = b[idx];
+				long infectedNN = a[up + j] | a[down + j] | a[row + yPlus1[j]] | a[row + yMinus1[j]];
+				long c1 = ~(ai | bi) & infectedNN & live, c2 = ai & live, c3 = bi & live;
+				long change = this.accept(c1, q1, c2, q2, c3, q3);
+				long na = (ai & ~change) | (change & c1), nb = (bi & ~change) | (change & c2);
+				nextA[idx] = na;
+				nextB[idx] = nb;
+				add(this.countI, na);
+				add(this.countR, nb);
+			}
+		}
+		this.a = nextA;
+		this.b = nextB;
+		this.nextA = a;
+		this.nextB = b;
+		this.recount();
+	}
+
+	double[][] measure(double[] prob, long NStabilise, int NAvg, long NSkip){
+		/*
+		 * Sirs.measure() for every replica at once: returns one row per
+		 * replica in its layout, {<S>, <I>, <R>, <(dS)^2>, <(dI)^2>,
+		 * <(dR)^2>, equilibration sweeps, errors of <S>, <I>, <R>,
+		 * samples}. Equilibration ends when every replica has settled
+		 * (or is frozen); the column reports when each one did.
+		 * In continuation mode only the frozen replicas restart cold.
+		 */
+		long t0 = System.nanoTime();
+		for(int x=0; x<3; x++) expand(prob[x], this.q[x]);
+		java.util.Arrays.fill(this.swept, 0);
+		long cold = this.continuation && this.warm ? this.frozen & this.active : this.active;
+		if(cold != 0) this.randomState(cold);
+		double sites = (double)Nx*Ny;
+		EquilibrationDetector[] detectors = new EquilibrationDetector[LANES];
+		if(this.tolerance > 0)
+			for(int l=0; l<this.lanes; l++) // Warm replicas: the window of Sirs.measure().
+				detectors[l] = new EquilibrationDetector(this.tolerance,
+						(cold >>> l & 1) != 0 ? this.window : Sirs.warmWindow(this.window));
+		long[] used = new long[LANES];
+		long settled = ~this.active | this.frozen, sweeps = 0;
+		while(sweeps < NStabilise && settled != -1L){
+			this.sweep(this.active & ~this.frozen);
+			sweeps += 1;
+			for(int l=0; l<this.lanes; l++){
+				long bit = 1L << l;
+				if((settled & bit) != 0) continue;
+				used[l] = sweeps;
+				if((this.frozen & bit) != 0 || (detectors[l] != null && detectors[l].add(
+						(sites - nI[l] - nR[l])/sites, nI[l]/sites, nR[l]/sites))) settled |= bit;
+			}
+		}
+		long t1 = System.nanoTime();
+		BlockingAnalysis[][] stats = new BlockingAnalysis[this.lanes][3];
+		for(BlockingAnalysis[] s : stats)
+			for(int c=0; c<3; c++) s[c] = new BlockingAnalysis();
+		int samples = 0;
+		while(samples < NAvg){
+			boolean done = this.precision > 0;
+			for(int l=0; l<this.lanes; l++){
+				stats[l][0].add((sites - nI[l] - nR[l])/sites);
+				stats[l][1].add(nI[l]/sites);
+				stats[l][2].add(nR[l]/sites);
+				done &= stats[l][1].isConverged() && stats[l][1].getStdError() < this.precision;
+			}
+			samples += 1;
+			if(done) break;
+			for(long n=0; n<NSkip; n++){
+				long live = n == 0 ? this.active : this.active & ~this.frozen; // As Sirs.updateN().
+				if(live == 0) break;
+				this.sweep(live);
+			}
+		}
+		this.warm = true;
+		long t2 = System.nanoTime();
+
+		double[][] rows = new double[this.lanes][];
+		for(int l=0; l<this.lanes; l++){
+			BlockingAnalysis[] s = stats[l];
+			rows[l] = new double[] {s[0].getMean(), s[1].getMean(), s[2].getMean(),
+					s[0].getVariance(), s[1].getVariance(), s[2].getVariance(), used[l],
+					s[0].getStdError(), s[1].getStdError(), s[2].getStdError(), samples};
+		}
+		if(this.monitor != null){ // One point per replica, sharing the time; frozen replicas do not sweep.
+			String label = "ensemble p1=" + prob[0] + " p2=" + prob[1] + " p3=" + prob[2];
+			for(int l=0; l<this.lanes; l++)
+				this.monitor.pointDone(label, (t1 - t0) / this.lanes, (t2 - t1) / this.lanes,
+						this.swept[l] * (long)Nx*Ny);
+		}
+		return rows;
+	}
+
+	double[][][] getData(int nGridPoints){
+		/*
+		 * Sirs.getData() with random==False for every replica:
+		 * data[replica][point] holds the 10 columns of Sirs.getData().
+		 */
+		double[] prob = {0., 0.5, 0.};
+		int n = nGridPoints, NAvg = 100000;
+		long NStabilise = 10000000, NSkip = 100;
+		double[][][] data = new double[this.lanes][n*n][];
+		int i = 0;
+		for(int i1=0; i1<n; i1++){
+			prob[0] = i1 / (double)(n-1);
+			this.warm = false;
+			for(int i3=0; i3<n; i3++){
+				prob[2] = i3 / (double)(n-1);
+				double[][] avgStates = this.measure(prob, NStabilise, NAvg, NSkip);
+				for(int l=0; l<this.lanes; l++){
+					double[] r = avgStates[l];
+					data[l][i] = new double[] {prob[0], prob[1], prob[2],
+							r[0], r[1], r[2], r[3], r[4], r[5], r[6]};
+				}
+				i += 1;
+			}
+		}
+		return data;
+	}
+
+}
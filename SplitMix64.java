@@ -0,0 +1,43 @@
+public final class SplitMix64 implements Rng {
+	/*
+	 * SplitMix64 (Steele, Lea & Flood 2014), the generator behind
+	 * java.util.SplittableRandom, with its state exposed so it can
+	 * be saved and restored.
+	 */
+	
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+	private long seed;
+	
+	public SplitMix64(long seed){
+		this.seed = seed;
+	}
+	
+	public long nextLong(){
+		return mix64(this.seed += GOLDEN_GAMMA);
+	}
+	
+	public void nextLongs(long[] dst, int n){
+		long seed = this.seed;
+		for(int k=0; k<n; k++) dst[k] = mix64(seed += GOLDEN_GAMMA);
+		this.seed = seed;
+	}
+	
+	public Rng split(){
+		return new SplitMix64(mix64(this.nextLong()));
+	}
+	
+	public long getState(){
+		return this.seed;
+	}
+	
+	public void setState(long seed){
+		this.seed = seed;
+	}
+	
+	static long mix64(long z){
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+	
+}
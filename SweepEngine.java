@@ -0,0 +1,303 @@
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SweepEngine {
+	/*
+	 * Runs the grid points of a phase diagram concurrently. Every grid
+	 * point gets its own Sirs lattice and its own random stream (derived
+	 * from 'seed' and the point index, so a run is reproducible for any
+	 * number of threads), and the points are spread over a work-stealing
+	 * ForkJoinPool. Results are written in grid order, in the same 
+	 * column layout as the serial Sirs methods.
+	 */
+	
+	private final int Nx, Ny;
+	private final ForkJoinPool pool;
+	private long seed = System.nanoTime();
+	private int NStabilise = 10000000, NAvg = -1, NSkip = -1; // -1: use the per-sweep defaults.
+	private Sirs.RandomEngine engine = Sirs.RandomEngine.SERIAL; // See Sirs.setRandomEngine().
+	private double tolerance = 0.; // Off, see Sirs.setEquilibration().
+	private int window = 50;
+	private SweepMonitor monitor; // See Sirs.setMonitor().
+	private double precision = 0.; // See Sirs.setPrecision().
+	
+	public SweepEngine(int Nx, int Ny, int nThreads){
+		/*
+		 * nThreads <= 0 uses every available core.
+		 */
+		if(Nx > 0 && Ny > 0){
+			this.Nx = Nx;
+			this.Ny = Ny;
+			this.pool = new ForkJoinPool(nThreads > 0 ? nThreads 
+					: Runtime.getRuntime().availableProcessors());
+		} else throw new IllegalArgumentException("Nx, Ny > 0.");
+	}
+	
+	public void setSeed(long seed){
+		this.seed = seed;
+	}
+	
+	public void setSampling(int NStabilise, int NAvg, int NSkip){
+		/*
+		 * Overrides the equilibration length, number of samples and
+		 * updates between samples used for every grid point.
+		 */
+		if(NStabilise >= 0 && NAvg > 0 && NSkip > 0){
+			this.NStabilise = NStabilise;
+			this.NAvg = NAvg;
+			this.NSkip = NSkip;
+		} else throw new IllegalArgumentException("NStabilise >= 0, NAvg, NSkip > 0.");
+	}
+	
+	public void setRandomEngine(Sirs.RandomEngine engine){
+		/*
+		 * Passed on to every grid point, see Sirs.setRandomEngine().
+		 */
+		if(engine != null) this.engine = engine;
+	}
+	
+	public void setEquilibration(double tolerance, int window){
+		/*
+		 * Passed on to every grid point, see Sirs.setEquilibration().
+		 */
+		if(tolerance > 0 && window < 2)
+			throw new IllegalArgumentException("window > 1.");
+		this.tolerance = tolerance;
+		this.window = window;
+	}
+	
+	public void setPrecision(double precision){
+		/*
+		 * Passed on to every grid point, see Sirs.setPrecision().
+		 */
+		this.precision = precision;
+	}
+	
+	public void setMonitor(SweepMonitor monitor){
+		/*
+		 * Every grid point reports to 'monitor', null for none.
+		 */
+		this.monitor = monitor;
+	}
+	
+	public void shutdown(){
+		this.pool.shutdown();
+	}
+	
+	public void getp1_p3Data(String outFile, int n, boolean random) 
+			throws FileNotFoundException, UnsupportedEncodingException{
+		/*
+		 * Parallel version of Sirs.getp1_p3Data(): sweeps p1=[0:1] and
+		 * p3=[0:1] on an n x n grid with p2=0.5.
+		 * Columns: p1 p2 p3 S/N I/N R/N <(dS)^2> <(dI)^2> <(dR)^2> equilibration updates
+		 *          error(S/N) error(I/N) error(R/N) samples
+		 */
+		double[][] points = new double[n*n][];
+		for(int i1=0; i1<n; i1++)
+			for(int i3=0; i3<n; i3++)
+				points[i1*n + i3] = new double[] {-1., i1 / (double)(n-1), 0.5, i3 / (double)(n-1)};
+		double[][] results = this.run(points, this.NAvg > 0 ? this.NAvg : 1000, 
+				this.NSkip > 0 ? this.NSkip : 10000, random);
+		PrintWriter writer = new PrintWriter(outFile, "UTF-8");
+		for(int i=0; i<points.length; i++){
+			writer.println(points[i][1] + " " + points[i][2] + " " + points[i][3] + " " + 
+					results[i][0] + " " + results[i][1] + " " + results[i][2] + " " + 
+					results[i][3] + " " + results[i][4] + " " + results[i][5] + " " + (long)results[i][6] + " " + 
+					results[i][7] + " " + results[i][8] + " " + results[i][9] + " " + (long)results[i][10]);
+			if((i+1)%n == 0) writer.println(); // For gnuplot 'splot'
+		}
+		writer.close();
+	}
+	
+	public void getAdaptivep1_p3Data(String outFile, int n, int levels, double tolerance, boolean random) 
+			throws FileNotFoundException, UnsupportedEncodingException{
+		/*
+		 * getp1_p3Data() refined where the phase diagram changes: starts
+		 * on the n x n grid, then 'levels' times splits every cell whose
+		 * corners are sharp in four, measuring only the new points. The
+		 * finest spacing is 1/((n-1)*2^levels).
+		 * A cell is sharp if its corners mix I=0 and I>0, if their I/N
+		 * differ by more than 'tolerance', or if their <(dI)^2> differ by
+		 * more than 'tolerance' times the largest <(dI)^2> measured so far.
+		 * Point k measured uses stream 'seed'+k, so a run is reproducible.
+		 * Output is scattered points, sorted by p1 then p3, in the
+		 * columns of getp1_p3Data(): e.g. splot 'file' u 1:3:5 w p.
+		 */
+		if(n < 2 || levels < 0 || levels > 15 || ((long)(n-1) << levels) >= 46340)
+			throw new IllegalArgumentException("n > 1, levels >= 0 and (n-1)*2^levels < 46340.");
+		int step = 1 << levels, m = (n-1)*step + 1; // Cells of the n x n grid are 'step' fine points wide.
+		Map<Integer, double[]> results = new TreeMap<Integer, double[]>(); // Key i1*m + i3.
+		List<int[]> cells = new ArrayList<int[]>(); // Lower corners {i1, i3}.
+		Set<Integer> fresh = new LinkedHashSet<Integer>();
+		for(int i1=0; i1<m; i1+=step)
+			for(int i3=0; i3<m; i3+=step){
+				fresh.add(i1*m + i3);
+				if(i1 < m-1 && i3 < m-1) cells.add(new int[] {i1, i3});
+			}
+		int NAvg = this.NAvg > 0 ? this.NAvg : 1000, NSkip = this.NSkip > 0 ? this.NSkip : 10000;
+		if(this.monitor != null) this.monitor.startSweep("SweepEngine adaptive " + outFile, 0); // Total grows per level.
+		this.measure(fresh, m, results, NAvg, NSkip, random);
+		for(int s=step; s>1; s/=2){
+			double varScale = 0.;
+			for(double[] r : results.values()) varScale = Math.max(varScale, r[4]);
+			List<int[]> refined = new ArrayList<int[]>();
+			fresh.clear();
+			for(int[] c : cells){
+				if(!sharp(results, m, c, s, varScale, tolerance)) continue;
+				int h = s/2;
+				for(int a=0; a<=2; a++)
+					for(int b=0; b<=2; b++){
+						int key = (c[0] + a*h)*m + c[1] + b*h;
+						if(!results.containsKey(key)) fresh.add(key);
+						if(a < 2 && b < 2) refined.add(new int[] {c[0] + a*h, c[1] + b*h});
+					}
+			}
+			this.measure(fresh, m, results, NAvg, NSkip, random);
+			cells = refined;
+		}
+		System.out.println(results.size() + " of " + m + "x" + m + " points measured");
+		PrintWriter writer = new PrintWriter(outFile, "UTF-8");
+		for(Map.Entry<Integer, double[]> e : results.entrySet()){
+			double[] r = e.getValue();
+			writer.println(e.getKey() / m / (double)(m-1) + " 0.5 " + e.getKey() % m / (double)(m-1) + " " + 
+					r[0] + " " + r[1] + " " + r[2] + " " + 
+					r[3] + " " + r[4] + " " + r[5] + " " + (long)r[6] + " " + 
+					r[7] + " " + r[8] + " " + r[9] + " " + (long)r[10]);
+		}
+		writer.close();
+	}
+	
+	private void measure(Set<Integer> keys, int m, Map<Integer, double[]> results, 
+			int NAvg, int NSkip, boolean random){
+		/*
+		 * Runs the fine grid points 'keys' of getAdaptivep1_p3Data()
+		 * with the streams following the points already in 'results'.
+		 */
+		if(keys.isEmpty()) return;
+		if(this.monitor != null) this.monitor.addPoints(keys.size());
+		double[][] points = new double[keys.size()][];
+		int i = 0;
+		for(int key : keys)
+			points[i++] = new double[] {-1., key / m / (double)(m-1), 0.5, key % m / (double)(m-1)};
+		double[][] r = this.run(points, NAvg, NSkip, random, results.size());
+		i = 0;
+		for(int key : keys) results.put(key, r[i++]);
+	}
+	
+	private static boolean sharp(Map<Integer, double[]> results, int m, int[] c, int s, 
+			double varScale, double tolerance){
+		double minI = 1., maxI = 0., minVar = Double.MAX_VALUE, maxVar = 0.;
+		boolean absorbing = false, endemic = false;
+		for(int a=0; a<=s; a+=s)
+			for(int b=0; b<=s; b+=s){
+				double[] r = results.get((c[0] + a)*m + c[1] + b);
+				if(r[1] == 0) absorbing = true;
+				else endemic = true;
+				minI = Math.min(minI, r[1]);
+				maxI = Math.max(maxI, r[1]);
+				minVar = Math.min(minVar, r[4]);
+				maxVar = Math.max(maxVar, r[4]);
+			}
+		return (absorbing && endemic) || maxI - minI > tolerance || 
+				(varScale > 0 && maxVar - minVar > tolerance*varScale);
+	}
+	
+	public void getImmunity(String outFile, int n, boolean random) 
+			throws FileNotFoundException, UnsupportedEncodingException{
+		/*
+		 * Parallel version of Sirs.getImmunity(): sweeps the immune
+		 * fraction and p1 on an n x n grid with p2=p3=0.5.
+		 * Columns: fracImmune p1 p2 p3 S/N I/N R/N <(dS)^2> <(dI)^2> <(dR)^2> equilibration updates
+		 *          error(S/N) error(I/N) error(R/N) samples
+		 */
+		double[][] points = new double[n*n][];
+		for(int i0=0; i0<n; i0++)
+			for(int i1=0; i1<n; i1++)
+				points[i0*n + i1] = new double[] {i0 / (double)(n-1), i1 / (double)(n-1), 0.5, 0.5};
+		double[][] results = this.run(points, this.NAvg > 0 ? this.NAvg : 100000, 
+				this.NSkip > 0 ? this.NSkip : 100, random);
+		PrintWriter writer = new PrintWriter(outFile, "UTF-8");
+		for(int i=0; i<points.length; i++){
+			writer.println(points[i][0] + " " + points[i][1] + " " + points[i][2] + " " + points[i][3] + " " + 
+					results[i][0] + " " + results[i][1] + " " + results[i][2] + " " + 
+					results[i][3] + " " + results[i][4] + " " + results[i][5] + " " + (long)results[i][6] + " " + 
+					results[i][7] + " " + results[i][8] + " " + results[i][9] + " " + (long)results[i][10]);
+			if((i+1)%n == 0) writer.println();
+		}
+		writer.close();
+	}
+	
+	double[][] run(double[][] points, int NAvg, int NSkip, boolean random){
+		if(this.monitor != null) this.monitor.startSweep("SweepEngine " + points.length + " points", points.length);
+		return this.run(points, NAvg, NSkip, random, 0);
+	}
+	
+	double[][] run(double[][] points, int NAvg, int NSkip, boolean random, long first){
+		/*
+		 * Measures every point {fracImmune, p1, p2, p3} (fracImmune < 0
+		 * for no immune sites) and returns the Sirs.measure() results 
+		 * in the same order. Point i uses stream 'seed'+first+i. The
+		 * monitor's sweep is left to the caller.
+		 */
+		double[][] results = new double[points.length][];
+		AtomicInteger done = new AtomicInteger();
+		this.pool.invoke(new PointTask(points, results, 0, points.length, NAvg, NSkip, random, first, done));
+		return results;
+	}
+	
+	private class PointTask extends RecursiveAction {
+		/*
+		 * Splits the index range in halves down to single grid points,
+		 * so idle workers can steal the remaining halves.
+		 */
+		private static final long serialVersionUID = 1L;
+		private final double[][] points, results;
+		private final int from, to, NAvg, NSkip;
+		private final boolean random;
+		private final long first; // Stream of point 0.
+		private final AtomicInteger done;
+		
+		PointTask(double[][] points, double[][] results, int from, int to, 
+				int NAvg, int NSkip, boolean random, long first, AtomicInteger done){
+			this.points = points;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+			this.NAvg = NAvg;
+			this.NSkip = NSkip;
+			this.random = random;
+			this.first = first;
+			this.done = done;
+		}
+		
+		protected void compute(){
+			if(this.to - this.from > 1){
+				int mid = (this.from + this.to) >>> 1;
+				invokeAll(new PointTask(points, results, from, mid, NAvg, NSkip, random, first, done),
+						new PointTask(points, results, mid, to, NAvg, NSkip, random, first, done));
+				return;
+			}
+			double[] point = this.points[this.from];
+			Sirs sirs = new Sirs(Nx, Ny, new double[] {point[1], point[2], point[3]});
+			sirs.setRng(new Xoshiro256(SplitMix64.mix64(seed + this.first + this.from)));
+			sirs.setRandomEngine(engine);
+			sirs.setEquilibration(tolerance, window);
+			sirs.setMonitor(monitor);
+			sirs.setPrecision(precision);
+			this.results[this.from] = sirs.measure(new double[] {point[1], point[2], point[3]}, 
+					point[0], NStabilise, this.NAvg, this.NSkip, this.random, false);
+			System.out.println(this.done.incrementAndGet() + "/" + this.points.length);
+		}
+	}
+	
+}
@@ -0,0 +1,174 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+public class SweepMonitor implements SweepMonitorMBean {
+	/*
+	 * Progress of a sweep, fed by Sirs.measure() and the sweep loops of
+	 * Sirs and SweepEngine, and published as the MBean
+	 * vidamuerte:type=SweepMonitor,name=<name> after register().
+	 * Safe to feed from many grid points at once. Live S/I/R are read
+	 * from the lattice of the grid point started last.
+	 */
+
+	private final String name;
+	private volatile String sweep = "";
+	private final AtomicInteger total = new AtomicInteger(), done = new AtomicInteger(), 
+			measured = new AtomicInteger();
+	private volatile long start = System.nanoTime();
+	private final LongAdder equilibrationNanos = new LongAdder(), averagingNanos = new LongAdder(),
+			siteUpdates = new LongAdder();
+	private volatile long lastNanos = 0, slowestNanos = 0;
+	private volatile String currentPoint = "", slowestPoint = "";
+	private volatile Sirs current;
+
+	public SweepMonitor(String name){
+		this.name = name;
+	}
+
+	public SweepMonitor register(){
+		try{
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, this.objectName());
+		} catch(JMException e){
+			throw new IllegalStateException("Cannot register SweepMonitor " + this.name, e);
+		}
+		return this;
+	}
+
+	public void unregister(){
+		try{
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName());
+		} catch(JMException e){
+			throw new IllegalStateException("Cannot unregister SweepMonitor " + this.name, e);
+		}
+	}
+
+	private ObjectName objectName() throws JMException{
+		return new ObjectName("vidamuerte:type=SweepMonitor,name=" + ObjectName.quote(this.name));
+	}
+
+	void startSweep(String sweep, int total){
+		this.sweep = sweep;
+		this.total.set(total);
+		this.done.set(0);
+		this.measured.set(0);
+		this.equilibrationNanos.reset();
+		this.averagingNanos.reset();
+		this.siteUpdates.reset();
+		this.lastNanos = 0;
+		this.slowestNanos = 0;
+		this.slowestPoint = "";
+		this.start = System.nanoTime();
+	}
+
+	void addPoints(int n){
+		/*
+		 * Grows the total of a sweep that finds its points as it runs,
+		 * see SweepEngine.getAdaptivep1_p3Data().
+		 */
+		this.total.addAndGet(n);
+	}
+
+	void pointSkipped(){
+		/*
+		 * A point finished before a restart, see Sirs.setCheckpoint().
+		 */
+		this.done.incrementAndGet();
+	}
+
+	void pointStarted(Sirs sirs, String point){
+		this.current = sirs;
+		this.currentPoint = point;
+	}
+
+	void pointDone(String point, long equilibrationNanos, long averagingNanos, long siteUpdates){
+		this.equilibrationNanos.add(equilibrationNanos);
+		this.averagingNanos.add(averagingNanos);
+		this.siteUpdates.add(siteUpdates);
+		long nanos = equilibrationNanos + averagingNanos;
+		this.lastNanos = nanos;
+		synchronized(this){
+			if(nanos > this.slowestNanos){
+				this.slowestNanos = nanos;
+				this.slowestPoint = point;
+			}
+		}
+		this.measured.incrementAndGet();
+		this.done.incrementAndGet();
+	}
+
+	public String getSweep(){
+		return this.sweep;
+	}
+
+	public int getPointsTotal(){
+		return this.total.get();
+	}
+
+	public int getPointsDone(){
+		return this.done.get();
+	}
+
+	public String getCurrentPoint(){
+		return this.currentPoint;
+	}
+
+	public double getS(){
+		Sirs sirs = this.current;
+		return sirs != null ? sirs.population(0) : Double.NaN;
+	}
+
+	public double getI(){
+		Sirs sirs = this.current;
+		return sirs != null ? sirs.population(1) : Double.NaN;
+	}
+
+	public double getR(){
+		Sirs sirs = this.current;
+		return sirs != null ? sirs.population(2) : Double.NaN;
+	}
+
+	public double getSiteUpdatesPerSecond(){
+		/*
+		 * Over the whole sweep, all threads together.
+		 */
+		double elapsed = this.getElapsedSeconds();
+		return elapsed > 0 ? this.siteUpdates.sum() / elapsed : 0.;
+	}
+
+	public double getEquilibrationSeconds(){
+		return this.equilibrationNanos.sum() * 1e-9;
+	}
+
+	public double getAveragingSeconds(){
+		return this.averagingNanos.sum() * 1e-9;
+	}
+
+	public double getLastPointSeconds(){
+		return this.lastNanos * 1e-9;
+	}
+
+	public double getSlowestPointSeconds(){
+		return this.slowestNanos * 1e-9;
+	}
+
+	public String getSlowestPoint(){
+		return this.slowestPoint;
+	}
+
+	public double getElapsedSeconds(){
+		return (System.nanoTime() - this.start) * 1e-9;
+	}
+
+	public double getEtaSeconds(){
+		/*
+		 * Remaining points at the pace of the points measured so far.
+		 */
+		int measured = this.measured.get();
+		if(measured == 0) return Double.NaN;
+		return this.getElapsedSeconds() / measured * (this.total.get() - this.done.get());
+	}
+
+}
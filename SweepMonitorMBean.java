@@ -0,0 +1,37 @@
+public interface SweepMonitorMBean {
+	/*
+	 * Live view of a running sweep over JMX (jconsole, VisualVM, ...).
+	 * Times in seconds.
+	 */
+	
+	String getSweep();
+	
+	int getPointsTotal();
+	
+	int getPointsDone();
+	
+	String getCurrentPoint();
+	
+	double getS();
+	
+	double getI();
+	
+	double getR();
+	
+	double getSiteUpdatesPerSecond();
+	
+	double getEquilibrationSeconds();
+	
+	double getAveragingSeconds();
+	
+	double getLastPointSeconds();
+	
+	double getSlowestPointSeconds();
+	
+	String getSlowestPoint();
+	
+	double getElapsedSeconds();
+	
+	double getEtaSeconds();
+	
+}
@@ -0,0 +1,34 @@
+public interface SyncKernel {
+	/*
+	 * The synchronous SIRS rule over a range of rows, as used by the
+	 * strips of SyncUpdater. Every site takes one draw of 'rng', in
+	 * row-major order, and accepts a change with probability p when
+	 * (draw >>> 11) < Rng.threshold(p), so all kernels give the same
+	 * lattice from the same stream.
+	 * rows() writes rows [from, to) of the state at t+1 of 'src' into
+	 * 'dst', with the thresholds t1, t2, t3 of p1, p2, p3, and adds the
+	 * population changes to delta = {dS, dI, dR}.
+	 * A kernel keeps row buffers: one instance per thread.
+	 */
+
+	void rows(Lattice src, Lattice dst, int from, int to, long t1, long t2, long t3, Rng rng, long[] delta);
+
+	static SyncKernel create(int Nx, int Ny){
+		/*
+		 * The Vector API kernel (VectorSyncKernel) when the JVM runs
+		 * with '--add-modules jdk.incubator.vector' and has vectors of
+		 * at least 8 ints, ScalarSyncKernel otherwise or with
+		 * -Dsirs.syncKernel=scalar. The vector kernel is looked up by
+		 * name, so nothing else links against the incubator module.
+		 */
+		if(!"scalar".equals(System.getProperty("sirs.syncKernel")))
+			try{
+				return (SyncKernel)Class.forName("VectorSyncKernel")
+						.getDeclaredConstructor(int.class, int.class).newInstance(Nx, Ny);
+			} catch(ReflectiveOperationException | LinkageError e){
+				// No incubator module or no usable vector shape: scalar.
+			}
+		return new ScalarSyncKernel(Nx, Ny);
+	}
+
+}
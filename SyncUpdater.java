@@ -0,0 +1,92 @@
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+public class SyncUpdater {
+	/*
+	 * Synchronous (parallel) SIRS update: every site reads its own
+	 * state and its Nearest Neighbours from the lattice at time t and
+	 * writes its new state into a second lattice, so the result does 
+	 * not depend on traversal order.
+	 * 
+	 * The rows are split into strips, each with its own random stream
+	 * and its own S/I/R deltas, so strips can be processed by different
+	 * threads and the result is the same for any number of threads.
+	 * Each strip draws its random numbers in blocks (Rng.nextLongs())
+	 * and compares them with integer thresholds (Rng.threshold()); the
+	 * rule itself is a SyncKernel, on SIMD lanes where available.
+	 * Boundary Conditions: PERIODIC
+	 */
+	
+	private static final int MAX_STRIPS = 64;
+	private static final int MIN_PARALLEL_SITES = 1 << 15; // Smaller lattices run in the caller thread.
+	private final int Nx, Ny;
+	private final Strip[] strips;
+	private Lattice src, dst;
+	private long t1, t2, t3; // Rng.threshold() of p1, p2, p3.
+	
+	public SyncUpdater(int Nx, int Ny, Rng rng){
+		this.Nx = Nx;
+		this.Ny = Ny;
+		int nStrips = Math.min(Nx, MAX_STRIPS);
+		this.strips = new Strip[nStrips];
+		for(int s=0; s<nStrips; s++)
+			this.strips[s] = new Strip((int)((long)s*Nx/nStrips), (int)((long)(s+1)*Nx/nStrips), rng.split(),
+					SyncKernel.create(Nx, Ny));
+	}
+	
+	public String getKernel(){
+		return this.strips[0].kernel.getClass().getSimpleName();
+	}
+	
+	public long[] sweep(Lattice src, Lattice dst, double[] p){
+		/*
+		 * Writes the state at time t+1 of 'src' into 'dst'.
+		 * Returns the population changes {dS, dI, dR}.
+		 */
+		this.src = src;
+		this.dst = dst;
+		this.t1 = Rng.threshold(p[0]);
+		this.t2 = Rng.threshold(p[1]);
+		this.t3 = Rng.threshold(p[2]);
+		if((long)Nx*Ny < MIN_PARALLEL_SITES)
+			for(Strip strip : this.strips) strip.compute();
+		else{
+			for(Strip strip : this.strips) strip.reinitialize();
+			ForkJoinTask.invokeAll(this.strips);
+		}
+		long[] delta = {0, 0, 0};
+		for(Strip strip : this.strips){
+			delta[0] += strip.delta[0];
+			delta[1] += strip.delta[1];
+			delta[2] += strip.delta[2];
+		}
+		this.src = null;
+		this.dst = null;
+		return delta;
+	}
+	
+	private class Strip extends RecursiveAction {
+		/*
+		 * Rows [from, to) of the lattice.
+		 */
+		private static final long serialVersionUID = 1L;
+		private final int from, to;
+		private final Rng rng;
+		private final SyncKernel kernel;
+		private final long[] delta = new long[3];
+		
+		Strip(int from, int to, Rng rng, SyncKernel kernel){
+			this.from = from;
+			this.to = to;
+			this.rng = rng;
+			this.kernel = kernel;
+		}
+		
+		protected void compute(){
+			this.delta[0] = this.delta[1] = this.delta[2] = 0;
+			this.kernel.rows(SyncUpdater.this.src, SyncUpdater.this.dst, this.from, this.to, 
+					t1, t2, t3, this.rng, this.delta);
+		}
+	}
+	
+}
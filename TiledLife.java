@@ -0,0 +1,102 @@
+public class TiledLife extends BitLife {
+	/*
+	 * BitLife that only recomputes the regions that can change. The
+	 * grid is split into tiles of TILE lines by one 64 cell word. A
+	 * tile can only change in the next generation if it, or one of its
+	 * eight neighbouring tiles, changed in the last one; every other 
+	 * tile is skipped. Skipping is safe with two buffers: a tile that
+	 * did not change already holds the same cells in both of them.
+	 */
+	
+	private static final int TILE = 64; // Lines per tile.
+	private final int nTi, nTiles; // Tiles along the lines, tiles in total (nTi*W).
+	private boolean[] changed, nextChanged, active;
+	private boolean allDirty = true; // Cells were set from outside: recompute every tile once.
+	private int activeTiles = 0;
+	private long activeSum = 0, steps = 0;
+	
+	public TiledLife(int N){
+		super(N);
+		this.nTi = (N + TILE - 1) / TILE;
+		this.nTiles = this.nTi * W;
+		this.changed = new boolean[this.nTiles];
+		this.nextChanged = new boolean[this.nTiles];
+		this.active = new boolean[this.nTiles];
+	}
+	
+	public void set(int i, int j, boolean alive){
+		super.set(i, j, alive);
+		this.changed[(i / TILE)*W + (j >>> 6)] = true;
+	}
+	
+	public void randomise(Rng rng){
+		super.randomise(rng);
+		this.allDirty = true;
+	}
+	
+	public void step(long generations){
+		for(long g=0; g<generations; g++){
+			int count = 0;
+			if(this.allDirty){
+				java.util.Arrays.fill(this.active, true);
+				count = this.nTiles;
+				this.allDirty = false;
+			}
+			else{
+				java.util.Arrays.fill(this.active, false);
+				for(int t=0; t<this.nTiles; t++){
+					if(!this.changed[t]) continue;
+					int ti = t / W, tw = t - ti*W;
+					for(int di=-1; di<=1; di++)
+						for(int dw=-1; dw<=1; dw++){
+							int k = Math.floorMod(ti + di, nTi)*W + Math.floorMod(tw + dw, W);
+							if(!this.active[k]){
+								this.active[k] = true;
+								count += 1;
+							}
+						}
+				}
+			}
+			for(int t=0; t<this.nTiles; t++){
+				boolean tileChanged = false;
+				if(this.active[t]){
+					int ti = t / W, tw = t - ti*W, to = Math.min(N, (ti+1)*TILE);
+					long bits = 0;
+					for(int i=ti*TILE; i<to; i++)
+						bits |= stepWord(this.cells, this.next, N, W, lastMask, i, tw);
+					tileChanged = bits != 0;
+				}
+				this.nextChanged[t] = tileChanged;
+			}
+			boolean[] aux = this.changed;
+			this.changed = this.nextChanged;
+			this.nextChanged = aux;
+			long[] cellsAux = this.cells;
+			this.cells = this.next;
+			this.next = cellsAux;
+			this.generation += 1;
+			this.activeTiles = count;
+			this.activeSum += count;
+			this.steps += 1;
+		}
+	}
+	
+	public int getTiles(){
+		return this.nTiles;
+	}
+	
+	public int getActiveTiles(){
+		/*
+		 * Tiles recomputed in the last generation.
+		 */
+		return this.activeTiles;
+	}
+	
+	public double getMeanActiveFraction(){
+		/*
+		 * Average fraction of tiles recomputed per generation so far.
+		 */
+		return this.steps > 0 ? this.activeSum / ((double)this.steps * this.nTiles) : 0.;
+	}
+	
+}
@@ -0,0 +1,183 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class Trajectory {
+	/*
+	 * Compact binary S/I/R time series, as written by Sirs.updateSirsBinary().
+	 * 
+	 * Little-endian layout:
+	 *   header (56 bytes)
+	 *     int    magic "SIRT", int version,
+	 *     int    Nx, int Ny,
+	 *     double p1, double p2, double p3,
+	 *     long   stride (updates between records: Nx*Ny or 1 sweep),
+	 *     long   number of records
+	 *   records (12 bytes each)
+	 *     int    S, int I, int R (site counts)
+	 * Record k was taken after k*stride updates. Lattices of more than
+	 * 2^31 sites are written as version 2, with 24 byte records of
+	 * long S, long I, long R.
+	 * 
+	 * 'java Trajectory in.sirt out.dat' exports the series in the text
+	 * layout of Sirs.updateSirs() for gnuplot.
+	 */
+	
+	public static final int MAGIC = 0x54524953; // "SIRT" in little-endian byte order.
+	public static final int VERSION = 1, LONG_VERSION = 2;
+	public static final int HEADER_BYTES = 56;
+	private static final int BUFFER_BYTES = 1 << 16;
+	
+	public final int Nx, Ny;
+	public final double[] p;
+	public final long stride;
+	private final int version, recordBytes;
+	private long records;
+	
+	private Trajectory(int Nx, int Ny, double[] p, long stride, long records, int version){
+		this.version = version;
+		this.recordBytes = version == VERSION ? 12 : 24;
+		this.Nx = Nx;
+		this.Ny = Ny;
+		this.p = p;
+		this.stride = stride;
+		this.records = records;
+	}
+	
+	public long getRecords(){
+		return this.records;
+	}
+	
+	public static Writer openWriter(String outFile, int Nx, int Ny, double[] p, long stride) throws IOException{
+		return new Writer(outFile, new Trajectory(Nx, Ny, p.clone(), stride, 0, 
+				(long)Nx*Ny > Integer.MAX_VALUE ? LONG_VERSION : VERSION));
+	}
+	
+	public static Reader openReader(String inFile) throws IOException{
+		return new Reader(inFile);
+	}
+	
+	public static class Writer implements AutoCloseable {
+		/*
+		 * Buffers records in a direct buffer and writes them through
+		 * the file channel; the record count is patched on close().
+		 */
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		private final Trajectory header;
+		
+		private Writer(String outFile, Trajectory header) throws IOException{
+			this.channel = FileChannel.open(Paths.get(outFile), StandardOpenOption.CREATE, 
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			this.header = header;
+			this.buffer.putInt(MAGIC).putInt(header.version).putInt(header.Nx).putInt(header.Ny)
+					.putDouble(header.p[0]).putDouble(header.p[1]).putDouble(header.p[2])
+					.putLong(header.stride).putLong(0);
+		}
+		
+		public void write(double S, double I, double R) throws IOException{
+			/*
+			 * Appends one record of populations (site counts).
+			 */
+			if(this.buffer.remaining() < this.header.recordBytes) this.flush();
+			if(this.header.version == VERSION) this.buffer.putInt((int)S).putInt((int)I).putInt((int)R);
+			else this.buffer.putLong((long)S).putLong((long)I).putLong((long)R);
+			this.header.records += 1;
+		}
+		
+		private void flush() throws IOException{
+			this.buffer.flip();
+			while(this.buffer.hasRemaining()) this.channel.write(this.buffer);
+			this.buffer.clear();
+		}
+		
+		public void close() throws IOException{
+			try{
+				this.flush();
+				this.buffer.putLong(this.header.records).flip();
+				this.channel.write(this.buffer, HEADER_BYTES - 8);
+			} finally{
+				this.channel.close(); // Released even if the last records could not be written.
+			}
+		}
+	}
+	
+	public static class Reader implements AutoCloseable {
+		/*
+		 * Sequential reader. next() fills {S, I, R} site counts.
+		 */
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		private final Trajectory header;
+		private long read = 0;
+		
+		private Reader(String inFile) throws IOException{
+			this.channel = FileChannel.open(Paths.get(inFile), StandardOpenOption.READ);
+			this.buffer.limit(HEADER_BYTES);
+			while(this.buffer.hasRemaining())
+				if(this.channel.read(this.buffer) < 0) throw new IOException("Truncated header: " + inFile);
+			this.buffer.flip();
+			if(this.buffer.getInt() != MAGIC) throw new IOException("Not a SIRS trajectory: " + inFile);
+			int version = this.buffer.getInt();
+			if(version != VERSION && version != LONG_VERSION) 
+				throw new IOException("Unsupported trajectory version " + version);
+			int Nx = this.buffer.getInt(), Ny = this.buffer.getInt();
+			double[] p = {this.buffer.getDouble(), this.buffer.getDouble(), this.buffer.getDouble()};
+			this.header = new Trajectory(Nx, Ny, p, this.buffer.getLong(), this.buffer.getLong(), version);
+			this.buffer.clear().flip();
+		}
+		
+		public Trajectory getHeader(){
+			return this.header;
+		}
+		
+		public boolean next(long[] sir) throws IOException{
+			/*
+			 * Returns false at the end of the series.
+			 */
+			if(this.read == this.header.records) return false;
+			int recordBytes = this.header.recordBytes;
+			if(this.buffer.remaining() < recordBytes){
+				this.buffer.compact();
+				while(this.buffer.position() < recordBytes)
+					if(this.channel.read(this.buffer) < 0) throw new IOException("Truncated trajectory.");
+				this.buffer.flip();
+			}
+			for(int k=0; k<3; k++)
+				sir[k] = this.header.version == VERSION ? this.buffer.getInt() : this.buffer.getLong();
+			this.read += 1;
+			return true;
+		}
+		
+		public void close() throws IOException{
+			this.channel.close();
+		}
+	}
+	
+	public static void exportText(String inFile, String outFile) throws IOException{
+		/*
+		 * Writes "n S/N I/N R/N" lines, as Sirs.updateSirs() does.
+		 */
+		try(Reader reader = openReader(inFile); 
+				PrintWriter writer = new PrintWriter(outFile, "UTF-8")){
+			Trajectory h = reader.getHeader();
+			long[] sir = new long[3];
+			for(long k=0; reader.next(sir); k++)
+				writer.println(k*h.stride + " " + sir[0]/((double)h.Nx*h.Ny) + " " + 
+						sir[1]/((double)h.Nx*h.Ny) + " " + sir[2]/((double)h.Nx*h.Ny));
+		}
+	}
+	
+	public static void main(String[] args) throws IOException{
+		if(args.length != 2){
+			System.out.println("Usage: java Trajectory in.sirt out.dat");
+			return;
+		}
+		exportText(args[0], args[1]);
+	}
+	
+}
@@ -0,0 +1,121 @@
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+public final class VectorSyncKernel implements SyncKernel {
+	/*
+	 * The synchronous rule on SIMD lanes (jdk.incubator.vector), one
+	 * row at a time. The source rows i-1, i, i+1 are copied into
+	 * buffers padded with the opposite edge site, buf = {row[Ny-1],
+	 * row[0..Ny), row[0]}, so the left and right neighbours of a run
+	 * of lanes are plain loads at j and j+2 and the periodic wrap
+	 * needs no special case.
+	 * The acceptance test u < t on the 53 bit draws is done exactly in
+	 * int lanes, split into the top 30 and low 23 bits:
+	 *     u < t  <=>  hi(u) < hi(t) or (hi(u) == hi(t) and lo(u) < lo(t)).
+	 * The int masks are cast to byte lanes of the same count, which
+	 * select the new states by blending; S/I/R changes are counted from
+	 * the masks. Sites left over at the end of a row take the scalar
+	 * path with the same test.
+	 * Needs '--add-modules jdk.incubator.vector', see SyncKernel.create().
+	 */
+
+	private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Byte> BYTES = // Same lane count as INTS: at least 8.
+			VectorSpecies.of(byte.class, VectorShape.forBitSize(8*INTS.length()));
+	private static final int LO_BITS = 23, LO_MASK = (1 << LO_BITS) - 1;
+	private final int Nx, Ny;
+	private byte[] down, mid, up; // Padded source rows i-1, i, i+1.
+	private final byte[] out; // Row i at t+1.
+	private final long[] draws = new long[Rng.BLOCK];
+	private final int[] hi = new int[Rng.BLOCK], lo = new int[Rng.BLOCK]; // Split draws.
+
+	public VectorSyncKernel(int Nx, int Ny){
+		this.Nx = Nx;
+		this.Ny = Ny;
+		this.down = new byte[Ny + 2];
+		this.mid = new byte[Ny + 2];
+		this.up = new byte[Ny + 2];
+		this.out = new byte[Ny];
+	}
+
+	private void load(Lattice src, int i, byte[] buf){
+		src.get((long)i*Ny, buf, 1, Ny);
+		buf[0] = buf[Ny];
+		buf[Ny+1] = buf[1];
+	}
+
+	public void rows(Lattice src, Lattice dst, int from, int to, long t1, long t2, long t3, Rng rng, long[] delta){
+		// u < 2^53 always, so capping t at 2^53 keeps the test and hi(t) within 30 bits.
+		t1 = Math.min(t1, 1L << 53);
+		t2 = Math.min(t2, 1L << 53);
+		t3 = Math.min(t3, 1L << 53);
+		int h1 = (int)(t1 >>> LO_BITS), h2 = (int)(t2 >>> LO_BITS), h3 = (int)(t3 >>> LO_BITS);
+		int l1 = (int)t1 & LO_MASK, l2 = (int)t2 & LO_MASK, l3 = (int)t3 & LO_MASK;
+		int lanes = INTS.length();
+		long toS = 0, toI = 0, toR = 0; // Sites entering S, I and R.
+		long[] draws = this.draws;
+		int[] hi = this.hi, lo = this.lo;
+		byte[] out = this.out;
+		this.load(src, (from-1+Nx) % Nx, this.down);
+		this.load(src, from, this.mid);
+		for(int i=from; i<to; i++){
+			this.load(src, (i+1) % Nx, this.up);
+			byte[] down = this.down, mid = this.mid, up = this.up;
+			for(int j0=0; j0<Ny; j0+=draws.length){
+				int n = Math.min(draws.length, Ny - j0);
+				rng.nextLongs(draws, n);
+				for(int k=0; k<n; k++){
+					long u = draws[k] >>> 11;
+					hi[k] = (int)(u >>> LO_BITS);
+					lo[k] = (int)u & LO_MASK;
+				}
+				int k = 0;
+				for(; k <= n - lanes; k += lanes){
+					int j = j0 + k;
+					IntVector uh = IntVector.fromArray(INTS, hi, k), ul = IntVector.fromArray(INTS, lo, k);
+					VectorMask<Byte> a1 = uh.lt(h1).or(uh.eq(h1).and(ul.lt(l1))).cast(BYTES);
+					VectorMask<Byte> a2 = uh.lt(h2).or(uh.eq(h2).and(ul.lt(l2))).cast(BYTES);
+					VectorMask<Byte> a3 = uh.lt(h3).or(uh.eq(h3).and(ul.lt(l3))).cast(BYTES);
+					ByteVector s = ByteVector.fromArray(BYTES, mid, j+1);
+					VectorMask<Byte> infectedNN = ByteVector.fromArray(BYTES, up, j+1).eq((byte)1)
+							.or(ByteVector.fromArray(BYTES, down, j+1).eq((byte)1))
+							.or(ByteVector.fromArray(BYTES, mid, j).eq((byte)1))
+							.or(ByteVector.fromArray(BYTES, mid, j+2).eq((byte)1));
+					VectorMask<Byte> recover = s.eq((byte)1).and(a2);
+					VectorMask<Byte> lose = s.eq((byte)2).and(a3);
+					VectorMask<Byte> infect = s.eq((byte)0).and(a1).and(infectedNN);
+					s.blend((byte)2, recover).blend((byte)0, lose).blend((byte)1, infect).intoArray(out, j);
+					toR += recover.trueCount();
+					toS += lose.trueCount();
+					toI += infect.trueCount();
+				}
+				for(; k<n; k++){
+					int j = j0 + k;
+					long u = (long)hi[k] << LO_BITS | lo[k];
+					byte siteState = mid[j+1], newState = siteState;
+					if(siteState == 1 && u < t2) newState = 2;
+					else if(siteState == 2 && u < t3) newState = 0;
+					else if(siteState == 0 && u < t1 && (up[j+1] == 1 || down[j+1] == 1 ||
+							mid[j] == 1 || mid[j+2] == 1)) newState = 1;
+					if(newState != siteState){
+						if(newState == 2) toR += 1;
+						else if(newState == 0) toS += 1;
+						else toI += 1;
+					}
+					out[j] = newState;
+				}
+			}
+			dst.set((long)i*Ny, out, 0, Ny);
+			this.down = mid; // Rotate: row i becomes the lower neighbour of row i+1.
+			this.mid = up;
+			this.up = down;
+		}
+		delta[0] += toS - toI;
+		delta[1] += toI - toR;
+		delta[2] += toR - toS;
+	}
+
+}
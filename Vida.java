@@ -1,82 +1,107 @@
-import java.awt.Color;
 import java.awt.Frame;
-import java.awt.event.WindowAdapter;
-import java.awt.event.WindowEvent;
-import java.awt.image.BufferedImage;
-import java.io.FileNotFoundException;
-import java.io.PrintWriter;
-import java.io.UnsupportedEncodingException;
+import java.awt.GraphicsEnvironment;
 
 public class Vida{
 	
 	private int N = 100;
-	private int[][] life = new int[N][N];
-	private final BufferedImage bi;
-	private int[] indexPlus = new int[N];
-	private int[] indexMinus = new int[N];
-	private final Frame f = new Frame();
+	private Renderer view; // Created by init(), and never without a display.
+	private FrameSink sink; // Optional movie output, see setFrameSink().
+	private static final int[] PALETTE = new int[256]; // Cell colours (RGB): dead blue, alive yellow.
+	static {
+		java.util.Arrays.fill(PALETTE, 0x0000FF);
+		PALETTE[1] = 0xFFFF00;
+	}
+	private LifeEngine engine; // Holds the cells and advances generations.
+	private Rng rng = new Xoshiro256(System.nanoTime());
 
 	public Vida(int N){
 		if(N<=0) throw new IllegalArgumentException("N has to be larger than 0.");
 		else{
 			this.N = N;
-			life = new int[N][N];
-			indexPlus = new int[N];
-			indexMinus = new int[N];
-			for(int i=0; i<N; i++){
-				indexPlus[i] = i+1;
-				indexMinus[i] = i-1;
-			}
-			indexPlus[0] = N-1;
-			indexMinus[N-1] = 0;
-			
-			this.bi = new BufferedImage(N, N, BufferedImage.TYPE_INT_RGB);
+			this.engine = new TiledLife(N);
 		}
 	}
 	
+	public void setEngine(LifeEngine engine){
+		/*
+		 * Swaps the stepping backend, keeping the current cells. A
+		 * replaced ParallelLife is shut down, stopping its workers.
+		 */
+		if(engine.getN() != this.N) throw new IllegalArgumentException("Engine size must be N.");
+		for(int i=0; i<N; i++)
+			for(int j=0; j<N; j++)
+				engine.set(i, j, this.engine.get(i, j));
+		LifeEngine old = this.engine;
+		this.engine = engine;
+		if(old instanceof ParallelLife && old != engine) ((ParallelLife)old).shutdown();
+	}
+	
+	public LifeEngine getEngine(){
+		return this.engine;
+	}
+	
+	public void step(long generations){
+		/*
+		 * Advances the universe 'generations' generations.
+		 */
+		this.engine.step(generations);
+	}
+	
+	public double generationsPerSecond(long generations){
+		/*
+		 * Advances 'generations' generations and returns the rate achieved.
+		 */
+		long t0 = System.nanoTime();
+		this.engine.step(generations);
+		return generations / ((System.nanoTime() - t0) * 1e-9);
+	}
+	
 	public void startRandom(){
 		/*
 		 * Initialise spins randomly.
 		 */
-		for(int i=0; i<N; i++)
-			for(int j=0; j<N; j++){
-				double rand = 1 - 2 * Math.random();
-				if(rand > 0) life[i][j] = 1;
-				else if(rand <= 0) life[i][j] = 0;
-			}
+		this.engine.randomise(this.rng);
+	}
+	
+	public static int[] palette(){
+		return PALETTE.clone();
+	}
+	
+	public void setFrameSink(FrameSink sink){
+		/*
+		 * Snapshots are offered to 'sink' on every update(), null to 
+		 * stop. The caller closes it.
+		 */
+		this.sink = sink;
 	}
 	
 	public void init() {
 		/*
 		 * This generates the window with the initial configuration
-		 * of life/death.
+		 * of life/death. Drawing happens on the Renderer's own thread.
+		 * Without a display (headless JVM) there is no window.
 		 */
-		f.setIgnoreRepaint(true);
-		f.setTitle("Game of Life");
-		f.setVisible(true);
-		f.setSize(N, N + f.getInsets().top);
-		f.setExtendedState(Frame.MAXIMIZED_BOTH);
-		f.addWindowListener(new WindowAdapter() 
-		{public void windowClosing(WindowEvent we) {System.exit(0);}});
-		
-		for (int i = 0; i < bi.getWidth(); i++) 
-			for (int j = 0; j < bi.getHeight(); j++) 
-				bi.setRGB(i, j, life[i][j] == 1 ? Color.YELLOW.getRGB()
-						: Color.BLUE.getRGB());
-		f.getGraphics().drawImage(bi, 0, f.getInsets().top, 
-				f.getWidth(), f.getHeight()-f.getInsets().top, null);
+		if(this.view == null && !GraphicsEnvironment.isHeadless()){
+			this.view = new Renderer("Game of Life", N, N, PALETTE, N, N, 30);
+			this.view.getFrame().setExtendedState(Frame.MAXIMIZED_BOTH);
+		}
+		this.update();
 	}
 	
 	public void update() {
 		/*
-		 * Replot the life/death arrangement
+		 * Replot the life/death arrangement, if the renderer wants a
+		 * new frame, and feed the frame sink.
 		 */
-		for(int i=0; i<this.bi.getWidth(); i++)
-			for(int j=0; j<this.bi.getHeight(); j++)
-				this.bi.setRGB(i, j, this.life[i][j] == 1 ? Color.YELLOW.getRGB()
-						: Color.BLUE.getRGB());
-		this.f.getGraphics().drawImage(this.bi, 0, this.f.getInsets().top, 
-				this.f.getWidth(), this.f.getHeight()-f.getInsets().top, null);
+		byte[] frame;
+		if(this.view != null && (frame = this.view.acquire()) != null){
+			this.engine.store(frame);
+			this.view.publish(frame);
+		}
+		if(this.sink != null && (frame = this.sink.acquire()) != null){
+			this.engine.store(frame);
+			this.sink.publish(frame);
+		}
 	}
 
 	
@@ -86,7 +111,10 @@ public class Vida{
 		
 		Tyrone.startRandom();
 		Tyrone.init();
-		Tyrone.update();
+		for(int g=0; g<1000; g++){
+			Tyrone.step(1);
+			Tyrone.update();
+		}
 	}
 		
 }
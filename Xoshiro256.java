@@ -0,0 +1,65 @@
+public final class Xoshiro256 implements Rng {
+	/*
+	 * xoshiro256** (Blackman & Vigna 2018). Period 2^256 - 1, four
+	 * longs of state seeded through SplitMix64.
+	 */
+	
+	private long s0, s1, s2, s3;
+	
+	public Xoshiro256(long seed){
+		SplitMix64 sm = new SplitMix64(seed);
+		this.setState(new long[] {sm.nextLong(), sm.nextLong(), sm.nextLong(), sm.nextLong()});
+	}
+	
+	public long nextLong(){
+		final long result = Long.rotateLeft(this.s1 * 5, 7) * 9;
+		final long t = this.s1 << 17;
+		this.s2 ^= this.s0;
+		this.s3 ^= this.s1;
+		this.s1 ^= this.s2;
+		this.s0 ^= this.s3;
+		this.s2 ^= t;
+		this.s3 = Long.rotateLeft(this.s3, 45);
+		return result;
+	}
+	
+	public void nextLongs(long[] dst, int n){
+		long s0 = this.s0, s1 = this.s1, s2 = this.s2, s3 = this.s3;
+		for(int k=0; k<n; k++){
+			dst[k] = Long.rotateLeft(s1 * 5, 7) * 9;
+			final long t = s1 << 17;
+			s2 ^= s0;
+			s3 ^= s1;
+			s1 ^= s2;
+			s0 ^= s3;
+			s2 ^= t;
+			s3 = Long.rotateLeft(s3, 45);
+		}
+		this.s0 = s0;
+		this.s1 = s1;
+		this.s2 = s2;
+		this.s3 = s3;
+	}
+	
+	public Rng split(){
+		/*
+		 * Seeds a new generator from this stream. Collisions between
+		 * the 2^256 state sequences are negligible for our uses.
+		 */
+		return new Xoshiro256(this.nextLong() ^ this.nextLong());
+	}
+	
+	public long[] getState(){
+		return new long[] {this.s0, this.s1, this.s2, this.s3};
+	}
+	
+	public void setState(long[] s){
+		if(s.length != 4 || (s[0] | s[1] | s[2] | s[3]) == 0)
+			throw new IllegalArgumentException("xoshiro256 needs 4 longs, not all zero.");
+		this.s0 = s[0];
+		this.s1 = s[1];
+		this.s2 = s[2];
+		this.s3 = s[3];
+	}
+	
+}
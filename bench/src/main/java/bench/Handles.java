@@ -0,0 +1,75 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+final class Handles {
+	/*
+	 * The simulation classes live in the default package, which a named
+	 * package cannot import, and the hot paths are private. Benchmarks
+	 * reach them through method handles with Object receivers; kept in
+	 * static final fields they are constants to the JIT and inline like
+	 * direct calls.
+	 */
+
+	private Handles(){}
+
+	static Class<?> type(String name){
+		try{
+			return Class.forName(name);
+		} catch(ClassNotFoundException e){
+			throw new IllegalStateException(name + " is not on the class path.", e);
+		}
+	}
+
+	static MethodHandle constructor(String cls, Class<?>... params){
+		try{
+			Class<?> c = type(cls);
+			return lookup(c).findConstructor(c, MethodType.methodType(void.class, params))
+					.asType(MethodType.methodType(Object.class, params));
+		} catch(ReflectiveOperationException e){
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static MethodHandle virtual(String cls, String name, Class<?> returns, Class<?>... params){
+		/*
+		 * Handle of type (Object, params...)returns.
+		 */
+		try{
+			Class<?> c = type(cls);
+			MethodHandle h = lookup(c).findVirtual(c, name, MethodType.methodType(returns, params));
+			return h.asType(h.type().changeParameterType(0, Object.class));
+		} catch(ReflectiveOperationException e){
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static MethodHandle getter(String cls, String name, Class<?> type){
+		/*
+		 * Handle of type (Object)type reading an instance field.
+		 */
+		try{
+			Class<?> c = type(cls);
+			MethodHandle h = lookup(c).findGetter(c, name, type);
+			return h.asType(h.type().changeParameterType(0, Object.class));
+		} catch(ReflectiveOperationException e){
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static MethodHandle statik(String cls, String name, Class<?> returns, Class<?>... params){
+		try{
+			Class<?> c = type(cls);
+			return lookup(c).findStatic(c, name, MethodType.methodType(returns, params));
+		} catch(ReflectiveOperationException e){
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static MethodHandles.Lookup lookup(Class<?> c) throws IllegalAccessException{
+		return MethodHandles.privateLookupIn(c, MethodHandles.lookup());
+	}
+
+}
@@ -0,0 +1,146 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SirsBenchmark {
+	/*
+	 * Sirs hot paths, one lattice sweep (size^2 sites) per call.
+	 * The siteUpdates counter gives site-updates/s; run with '-prof gc'
+	 * for the allocation rate (gc.alloc.rate.norm is bytes per call).
+	 *
+	 * Regimes (p1, p2, p3):
+	 *   endemic    0.5, 0.5, 0.5   steady mixed state
+	 *   waves      0.8, 0.1, 0.01  travelling infection waves
+	 *   absorbing  0.1, 0.5, 0.9   infection dies out (I=0)
+	 */
+
+	private static final MethodHandle NEW = Handles.constructor("Sirs", int.class, int.class, double[].class);
+	private static final MethodHandle RANDOM_STATE = Handles.virtual("Sirs", "randomState", void.class);
+	private static final MethodHandle UPDATE_RANDOM = Handles.virtual("Sirs", "updateRandomSirs", void.class);
+	private static final MethodHandle UPDATE_BLOCK = Handles.virtual("Sirs", "updateRandomBlock", long.class, 
+			long.class, boolean.class);
+	private static final MethodHandle UPDATE_SYNC = Handles.virtual("Sirs", "updateParallelSirs", void.class);
+	private static final MethodHandle INFECTED_NN = Handles.virtual("Sirs", "infectedNN", boolean.class, int.class, int.class);
+	private static final MethodHandle SNAPSHOT = Handles.virtual("Sirs", "snapshot", void.class, byte[].class);
+	private static final MethodHandle PALETTE = Handles.statik("Sirs", "palette", int[].class);
+	private static final MethodHandle PAINT = Handles.statik("Renderer", "paint", void.class,
+			byte[].class, int[].class, int[].class, int.class, int.class);
+
+	@Param({"100", "1000", "4000"})
+	public int size;
+
+	@Param({"endemic", "waves", "absorbing"})
+	public String regime;
+
+	private Object sirs;
+	private int sites;
+	private byte[] frame;
+	private int[] palette, pixels;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Throwable{
+		double[] p;
+		switch(this.regime){
+			case "endemic": p = new double[] {0.5, 0.5, 0.5}; break;
+			case "waves": p = new double[] {0.8, 0.1, 0.01}; break;
+			case "absorbing": p = new double[] {0.1, 0.5, 0.9}; break;
+			default: throw new IllegalArgumentException(this.regime);
+		}
+		this.sirs = (Object)NEW.invokeExact(this.size, this.size, p);
+		this.sites = this.size*this.size;
+		this.frame = new byte[this.sites];
+		this.palette = (int[])PALETTE.invokeExact();
+		this.pixels = new int[this.sites];
+	}
+
+	@Setup(Level.Iteration)
+	public void reset() throws Throwable{
+		/*
+		 * Fresh lattice per iteration, so the absorbing regime is
+		 * measured on its way to I=0 and not only once there.
+		 */
+		RANDOM_STATE.invokeExact(this.sirs);
+	}
+
+	@Benchmark
+	public void randomSweep(SiteCounter counter) throws Throwable{
+		/*
+		 * updateRandomSirs() size^2 times.
+		 */
+		for(int k=0; k<this.sites; k++)
+			UPDATE_RANDOM.invokeExact(this.sirs);
+		counter.siteUpdates += this.sites;
+	}
+
+	@Benchmark
+	public long randomBlockSweep(SiteCounter counter) throws Throwable{
+		/*
+		 * The same size^2 steps as randomSweep(), with the random 
+		 * numbers drawn in blocks and integer acceptance thresholds.
+		 */
+		long n = (long)UPDATE_BLOCK.invokeExact(this.sirs, (long)this.sites, false);
+		counter.siteUpdates += this.sites;
+		return n;
+	}
+	
+	@Benchmark
+	public void synchronousSweep(SiteCounter counter) throws Throwable{
+		/*
+		 * updateParallelSirs(), every site at once.
+		 */
+		UPDATE_SYNC.invokeExact(this.sirs);
+		counter.siteUpdates += this.sites;
+	}
+
+	@Benchmark
+	public int infectedNN(SiteCounter counter) throws Throwable{
+		/*
+		 * The neighbour check of every site.
+		 */
+		int infected = 0;
+		for(int i=0; i<this.size; i++)
+			for(int j=0; j<this.size; j++)
+				if((boolean)INFECTED_NN.invokeExact(this.sirs, i, j)) infected += 1;
+		counter.siteUpdates += this.sites;
+		return infected;
+	}
+
+	@Benchmark
+	public void randomState(SiteCounter counter) throws Throwable{
+		RANDOM_STATE.invokeExact(this.sirs);
+		counter.siteUpdates += this.sites;
+	}
+
+	@Benchmark
+	public int[] update(SiteCounter counter) throws Throwable{
+		/*
+		 * The work of Sirs.update() for one frame, without a window:
+		 * lattice snapshot and palette lookup into the raster.
+		 */
+		SNAPSHOT.invokeExact(this.sirs, this.frame);
+		PAINT.invokeExact(this.frame, this.palette, this.pixels, this.size, this.size);
+		counter.siteUpdates += this.sites;
+		return this.pixels;
+	}
+
+}
@@ -0,0 +1,24 @@
+package bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class SiteCounter {
+	/*
+	 * Secondary result: sites (or cells) processed, reported by JMH
+	 * as siteUpdates ops/s next to the per-call score.
+	 */
+
+	public long siteUpdates;
+
+	@Setup(Level.Iteration)
+	public void reset(){
+		this.siteUpdates = 0;
+	}
+
+}
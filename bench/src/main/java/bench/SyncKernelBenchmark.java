@@ -0,0 +1,78 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class SyncKernelBenchmark {
+	/*
+	 * updateParallelSirs() (one synchronous sweep, size^2 sites) with
+	 * the scalar and the Vector API SyncKernel, in the regimes of
+	 * SirsBenchmark. The kernel actually used is checked in setUp().
+	 */
+
+	private static final MethodHandle NEW = Handles.constructor("Sirs", int.class, int.class, double[].class);
+	private static final MethodHandle RANDOM_STATE = Handles.virtual("Sirs", "randomState", void.class);
+	private static final MethodHandle UPDATE_SYNC = Handles.virtual("Sirs", "updateParallelSirs", void.class);
+
+	@Param({"100", "1000", "4000"})
+	public int size;
+
+	@Param({"endemic", "waves", "absorbing"})
+	public String regime;
+
+	@Param({"ScalarSyncKernel", "VectorSyncKernel"})
+	public String kernel;
+
+	private Object sirs;
+	private int sites;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Throwable{
+		double[] p;
+		switch(this.regime){
+			case "endemic": p = new double[] {0.5, 0.5, 0.5}; break;
+			case "waves": p = new double[] {0.8, 0.1, 0.01}; break;
+			case "absorbing": p = new double[] {0.1, 0.5, 0.9}; break;
+			default: throw new IllegalArgumentException(this.regime);
+		}
+		System.setProperty("sirs.syncKernel", this.kernel.equals("ScalarSyncKernel") ? "scalar" : "vector");
+		this.sirs = (Object)NEW.invokeExact(this.size, this.size, p);
+		UPDATE_SYNC.invokeExact(this.sirs); // Creates the SyncUpdater and its kernels.
+		Object sync = Handles.getter("Sirs", "sync", Handles.type("SyncUpdater")).invoke(this.sirs);
+		String used = (String)Handles.virtual("SyncUpdater", "getKernel", String.class).invoke(sync);
+		if(!used.equals(this.kernel))
+			throw new IllegalStateException(this.kernel + " not available, running " + used);
+		this.sites = this.size*this.size;
+	}
+
+	@Setup(Level.Iteration)
+	public void reset() throws Throwable{
+		RANDOM_STATE.invokeExact(this.sirs);
+	}
+
+	@Benchmark
+	public void synchronousSweep(SiteCounter counter) throws Throwable{
+		UPDATE_SYNC.invokeExact(this.sirs);
+		counter.siteUpdates += this.sites;
+	}
+
+}
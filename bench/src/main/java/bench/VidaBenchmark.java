@@ -0,0 +1,97 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VidaBenchmark {
+	/*
+	 * One Game of Life generation and one display frame per call, for
+	 * each stepping engine on a random universe. siteUpdates counts
+	 * cells (size^2 per call).
+	 */
+
+	private static final MethodHandle NEW_VIDA = Handles.constructor("Vida", int.class);
+	private static final MethodHandle SET_ENGINE = Handles.virtual("Vida", "setEngine", void.class, Handles.type("LifeEngine"));
+	private static final MethodHandle GET_ENGINE = Handles.virtual("Vida", "getEngine", Handles.type("LifeEngine"));
+	private static final MethodHandle START_RANDOM = Handles.virtual("Vida", "startRandom", void.class);
+	private static final MethodHandle STEP = Handles.virtual("Vida", "step", void.class, long.class);
+	private static final MethodHandle STORE = Handles.virtual("LifeEngine", "store", void.class, byte[].class);
+	private static final MethodHandle PALETTE = Handles.statik("Vida", "palette", int[].class);
+	private static final MethodHandle PAINT = Handles.statik("Renderer", "paint", void.class,
+			byte[].class, int[].class, int[].class, int.class, int.class);
+
+	@Param({"100", "1000", "4000"})
+	public int size;
+
+	@Param({"BitLife", "TiledLife", "ParallelLife"})
+	public String engine;
+
+	private Object vida, life;
+	private int cells;
+	private byte[] frame;
+	private int[] palette, pixels;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Throwable{
+		this.vida = (Object)NEW_VIDA.invokeExact(this.size);
+		Object backend = this.engine.equals("ParallelLife") // Every available core.
+				? Handles.constructor(this.engine, int.class, int.class).invoke(this.size, 0)
+				: Handles.constructor(this.engine, int.class).invoke(this.size);
+		SET_ENGINE.invoke(this.vida, backend);
+		this.life = GET_ENGINE.invoke(this.vida);
+		this.cells = this.size*this.size;
+		this.frame = new byte[this.cells];
+		this.palette = (int[])PALETTE.invokeExact();
+		this.pixels = new int[this.cells];
+	}
+
+	@Setup(Level.Iteration)
+	public void reset() throws Throwable{
+		START_RANDOM.invokeExact(this.vida);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Throwable{
+		if(this.engine.equals("ParallelLife"))
+			Handles.virtual("ParallelLife", "shutdown", void.class).invoke(this.life);
+	}
+
+	@Benchmark
+	public void step(SiteCounter counter) throws Throwable{
+		STEP.invokeExact(this.vida, 1L);
+		counter.siteUpdates += this.cells;
+	}
+
+	@Benchmark
+	public int[] update(SiteCounter counter) throws Throwable{
+		/*
+		 * The work of Vida.update() for one frame, without a window:
+		 * engine snapshot and palette lookup into the raster.
+		 */
+		STORE.invoke(this.life, this.frame);
+		PAINT.invokeExact(this.frame, this.palette, this.pixels, this.size, this.size);
+		counter.siteUpdates += this.cells;
+		return this.pixels;
+	}
+
+}